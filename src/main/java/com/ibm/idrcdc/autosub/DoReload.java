@@ -47,8 +47,14 @@ public class DoReload extends Version {
             targetFile.delete();
             sourceFile.renameTo(targetFile);
             LOG.info("Configuration merged.");
-            FileFlag.newReload(globals.getDataFile()) . enable();
-            LOG.info("Reload signaled.");
+            // Prefer the control endpoint of the running worker, if available
+            final String reply = new ControlClient(globals).send("POST", "/reload", null, null);
+            if (reply != null) {
+                LOG.info("Reload requested: {}", reply);
+            } else {
+                FileFlag.newReload(globals.getDataFile()) . enable();
+                LOG.info("Reload signaled.");
+            }
         } catch(Exception ex) {
             LOG.error("Command execution failed", ex);
             System.exit(1);
@@ -38,8 +38,14 @@ public class DoShutdown extends Version {
         try {
             final AsGlobals globals = AsGlobals.fromArgs(args);
             LOG.info("Working data file is {}", globals.getDataFile());
-            FileFlag.newShutdown(globals.getDataFile()) . enable();
-            LOG.info("Shutdown signaled.");
+            // Prefer the control endpoint of the running worker, if available
+            final String reply = new ControlClient(globals).send("POST", "/shutdown", null, null);
+            if (reply != null) {
+                LOG.info("Shutdown requested: {}", reply);
+            } else {
+                FileFlag.newShutdown(globals.getDataFile()) . enable();
+                LOG.info("Shutdown signaled.");
+            }
         } catch(Exception ex) {
             LOG.error("Command execution failed", ex);
             System.exit(1);
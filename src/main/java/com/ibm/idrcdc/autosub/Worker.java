@@ -21,8 +21,29 @@
  */
 package com.ibm.idrcdc.autosub;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import com.ibm.replication.cdc.scripting.EmbeddedScriptException;
 import com.ibm.idrcdc.autosub.config.*;
 import com.ibm.idrcdc.autosub.monitor.*;
@@ -32,27 +53,65 @@ import com.ibm.idrcdc.autosub.impl.*;
  * Application entry point and main working cycle.
  * @author zinal
  */
-public class Worker extends Version implements Runnable {
+public class Worker extends Version implements Runnable, ControlServer.Handler {
 
     private static final org.slf4j.Logger LOG
             = org.slf4j.LoggerFactory.getLogger(Worker.class);
 
+    private static final MetricFamily<Histogram> STAGE_TIME = Metrics.timers(
+            "cycle_stage", "stage", "Working cycle stage duration");
+    private static final MetricFamily<AtomicLong> SUBSCRIPTIONS = Metrics.gauges(
+            "subscriptions", "state",
+            "Monitored subscriptions per replication state, as of the last check");
+    private static final MetricFamily<AtomicLong> PENDING = Metrics.gauges(
+            "pending_repairs", null, "Subscriptions waiting for repair");
+    private static final MetricFamily<AtomicLong> CYCLE_COMMANDS = Metrics.gauges(
+            "cycle_chcclp_commands", null,
+            "CHCCLP round trips during the last working cycle, including the repairs");
+
+    // number of the recent outages listed by the control endpoint
+    private static final int OUTAGES_LISTED = 50;
+
     private final AsGlobals globals;
-    private final AsConfig config;
-    private final MonitorGroups groups;
+    // replaced on reload, read by the control endpoint
+    private volatile MonitorGroups groups;
     private final FileFlag flagShutdown;
     private final FileFlag flagReload;
+    private final ScriptPool scriptPool;
+    private final EngineProbeCache probes;
+    // pool to check the source datastores in parallel, null for sequential checks
+    private final ExecutorService checkPool;
+    private final RepairExecutor repairs;
+    // control requests, executed by the working cycle
+    private final Queue<FutureTask<String>> controlTasks = new ConcurrentLinkedQueue<>();
+    // sources being checked in the background, not available to the control tasks
+    private final Set<PerSource> checking = new HashSet<>();
+
+    // per-subscription state as of the last check, published for the metrics
+    private volatile List<SubscriptionState> subscriptionStates = Collections.emptyList();
 
-    private boolean configValidated = false;
+    private volatile boolean configValidated = false;
+    // true after the configuration reload, until the validation succeeds
+    private boolean configReloaded = false;
+    // true when the reload has been requested, until the repairs complete
+    private volatile boolean reloadPending = false;
     private boolean suppressConfigCheckMessage = false;
-    private boolean suppressConnectErrorMessage = false;
+    private final AtomicBoolean suppressConnectErrorMessage = new AtomicBoolean(false);
 
-    public Worker(AsGlobals globals, FileFlag flagShutdown) {
+    public Worker(AsGlobals globals, FileFlag flagShutdown, ScriptPool scriptPool,
+            EngineProbeCache probes) {
         this.globals = globals;
-        this.config = AsParser.load(globals);
-        this.groups = new MonitorGroups(config);
+        this.groups = new MonitorGroups(AsParser.load(globals));
         this.flagShutdown = flagShutdown;
         this.flagReload = FileFlag.newReload(globals.getDataFile());
+        if (globals.isFlagWatch())
+            this.flagReload.watch();
+        this.scriptPool = scriptPool;
+        this.probes = probes;
+        this.checkPool = (globals.getCheckThreads() > 1) ?
+                Executors.newFixedThreadPool(globals.getCheckThreads(),
+                        new DaemonThreadFactory("autosub-check")) : null;
+        this.repairs = new RepairExecutor(globals, this::openScript);
     }
 
     /**
@@ -64,16 +123,21 @@ public class Worker extends Version implements Runnable {
         try {
             final AsGlobals globals = AsGlobals.fromArgs(args);
             LOG.info("Working data file is {}", globals.getDataFile());
+            RemoteTool.configure(globals);
+            Metrics.enableJmx();
+            OutageTracker.getInstance().configure(globals);
             final FileFlag flagShutdown = FileFlag.newShutdown(globals.getDataFile());
             flagShutdown.disable();
-            // Main working cycle
-            while (true) {
-                // Check for shutdown request
-                if (flagShutdown.isEnabled())
-                    break;
-                new Worker(globals, flagShutdown) . run();
+            if (globals.isFlagWatch())
+                flagShutdown.watch();
+            try (ScriptPool scriptPool = new ScriptPool(globals);
+                    EngineProbeCache probes = new EngineProbeCache(globals)) {
+                // Main working cycle, until the shutdown request.
+                // Configuration reloads are handled within the cycle.
+                new Worker(globals, flagShutdown, scriptPool, probes) . run();
             }
             flagShutdown.disable();
+            RemoteTool.shutdown();
             LOG.info("Service shutting down...");
             System.exit(0);
         } catch(Exception ex) {
@@ -83,65 +147,168 @@ public class Worker extends Version implements Runnable {
     }
 
     /**
-     * Working cycle with the fixed configuration
-     * (e.g. set of monitored subscriptions).
+     * Working cycle, until the shutdown request.
      */
     @Override
     public void run() {
+        final ControlServer control = startControl();
+        final MetricsServer metrics = startMetrics();
+        try {
+            runCycle();
+        } finally {
+            if (metrics != null)
+                metrics.close();
+            if (control != null)
+                control.close();
+            // Reject the control requests which were not executed
+            FutureTask<String> task;
+            while ((task = controlTasks.poll()) != null)
+                task.cancel(false);
+            if (checkPool != null)
+                checkPool.shutdownNow();
+            repairs.shutdown();
+        }
+    }
+
+    private void runCycle() {
         // Enter the monitoring cycle.
         while (true) {
             long tvStart = System.currentTimeMillis();
+            final long commandsStart = Script.getCommandsTotal();
             // If shutdown is requested, exit to the main loop, which will exit too.
             if (flagShutdown.isEnabled())
                 break;
-            // If configuration reload is requested, just exit to the main loop,
-            // which will re-create the Worker object and re-run this method.
+            // If configuration reload is requested, apply the changes
+            // and validate the changed parts of the configuration.
             if (flagReload.isEnabled()) {
                 flagReload.disable();
-                LOG.info("Re-loading configuration...");
-                break;
+                reloadPending = true;
             }
+            // Repairs work on the current monitor groups, so the reload
+            // is deferred until they complete. No new repairs are started.
+            if (reloadPending) {
+                if (repairs.isIdle()) {
+                    reloadPending = false;
+                    reload();
+                } else {
+                    LOG.debug("Configuration reload deferred until the repairs complete.");
+                }
+            }
+            // Engines which failed the background probe need re-validation.
+            invalidateFailedEngines();
             // Validate the configuration, if not yet done.
             if (validate()) {
                 // Find the subscriptions to repair
+                final long tvCheck = System.nanoTime();
                 List<PerSource> pending = checkPending();
-                if (pending!=null && !pending.isEmpty()) {
+                STAGE_TIME.get("check").recordSince(tvCheck);
+                updateGauges();
+                if (pending!=null && !pending.isEmpty() && !reloadPending) {
                     LOG.debug("Pending recovery for datastores {}...", pending);
                     if ( pauseBeforeRepair() )
                         continue; // May get a shutdown flag
                     // Re-check after a small delay
                     ChangeSignature sig1 = new ChangeSignature(pending);
+                    final long tvRecheck = System.nanoTime();
                     pending = checkPending();
+                    STAGE_TIME.get("recheck").recordSince(tvRecheck);
                     ChangeSignature sig2 = new ChangeSignature(pending);
                     if (! sig1.equals(sig2)) {
                         LOG.debug("... changed by other means, going back to monitoring.");
                         continue;
                     }
-                    LOG.debug("... second check shows {}, starting repairs.", pending);
-                    // Repair everything
-                    for (PerSource ps : pending) {
-                        LOG.info("Repairs for source datastore {}...", ps);
-                        repair(ps);
-                    }
-                    LOG.info("Repairs complete, back to monitoring...");
-                    // Update start time for longer delay after the repairs
-                    tvStart = System.currentTimeMillis();
+                    LOG.debug("... second check shows {}, scheduling repairs.", pending);
+                    // Repair everything in background, independent sources in parallel.
+                    // Sources being repaired are skipped by the checks until completion.
+                    repairs.submit(pending);
                 }
             }
+            STAGE_TIME.get("cycle").record(System.currentTimeMillis() - tvStart);
+            CYCLE_COMMANDS.get().set(Script.getCommandsTotal() - commandsStart);
             pauseBetweenChecks(tvStart);
         } // while (true)
     }
 
+    /**
+     * Load the new configuration, keeping the runtime state
+     * of the unchanged datastores and subscriptions.
+     * Must be called while no repairs are running.
+     * The current configuration stays in effect if the new one
+     * cannot be loaded.
+     */
+    private void reload() {
+        LOG.info("Re-loading configuration...");
+        final AsConfig config;
+        try {
+            config = AsParser.load(globals);
+        } catch(Exception ex) {
+            LOG.error("Failed to load the new configuration, "
+                    + "keeping the current one\n\t{}", Misc.liteMessage(ex));
+            return;
+        }
+        final long tvReload = System.nanoTime();
+        groups = new MonitorGroups(config, groups);
+        OutageTracker.getInstance().retain(groups.getData());
+        STAGE_TIME.get("reload").recordSince(tvReload);
+        configValidated = false;
+        configReloaded = true;
+    }
+
+    /**
+     * Disable the engines which failed the background re-validation,
+     * together with their monitors, so that the next incremental
+     * validation probes them again.
+     */
+    private void invalidateFailedEngines() {
+        final List<String> failed = probes.takeFailed();
+        if (failed.isEmpty())
+            return;
+        final MonitorGroups current = groups;
+        boolean changed = false;
+        for (String name : failed) {
+            final PerEngine e = current.getEngines().get(name);
+            if (e == null || !e.isEnabled())
+                continue;
+            LOG.info("Datastore {} failed the background re-validation, "
+                    + "scheduling the full validation.", name);
+            e.setEnabled(false);
+            for (PerSource ps : current.getData()) {
+                for (Monitor m : ps.allMonitors()) {
+                    if (m.getSource()==e || m.getTarget()==e) {
+                        m.setEnabled(false);
+                        ps.getStates().reset();
+                    }
+                }
+            }
+            changed = true;
+        }
+        if (changed) {
+            configValidated = false;
+            configReloaded = true;
+        }
+    }
+
+    /**
+     * Pause until the specified time, or until the shutdown
+     * or reload request, whichever comes first.
+     * @param tvFinish End of the pause
+     * @return true, if the pause was interrupted by a request,
+     *   false at the end of the pause
+     */
     private boolean waitUntil(final long tvFinish) {
-        while (true) {
-            try {
-                Thread.sleep(500L);
-            } catch (InterruptedException ix) {}
-            if (flagShutdown.isEnabled())
-                return true; // Shutdown fast
-            if (tvFinish <= System.currentTimeMillis())
-                return false; // End of delay
+        while (FileFlag.awaitAny(tvFinish,
+                () -> !controlTasks.isEmpty() || isReloadReady(),
+                flagShutdown, flagReload)) {
+            if (flagShutdown.isEnabled() || flagReload.isEnabled()
+                    || isReloadReady())
+                return true;
+            runControlTasks();
         }
+        return false;
+    }
+
+    private boolean isReloadReady() {
+        return reloadPending && repairs.isIdle();
     }
 
     private boolean pauseBeforeRepair() {
@@ -161,6 +328,7 @@ public class Worker extends Version implements Runnable {
     private boolean validate() {
         if ( configValidated )
             return true;
+        final long tvStart = System.nanoTime();
         try (Script script = openScript()) {
             if (script == null) {
                 if (!suppressConfigCheckMessage) {
@@ -171,70 +339,409 @@ public class Worker extends Version implements Runnable {
                 return false;
             }
             suppressConfigCheckMessage = false;
-            new ConfigValidator(groups, script) . run();
+            final ConfigValidator validator = new ConfigValidator(groups, script,
+                    this::openScript, globals.getValidateThreads());
+            validator.setProbes(probes);
+            validator.setIncremental(configReloaded);
+            validator.run();
             configValidated = true;
+            configReloaded = false;
+            STAGE_TIME.get("validate").recordSince(tvStart);
             return true;
+        } catch(ScriptTimeoutException ste) {
+            LOG.warn("Configuration validation interrupted, will retry.\n\t{}",
+                    ste.getMessage());
+            return false;
         }
     }
 
     /**
-     * Identify any fixable failed subscriptions
+     * Publish the subscription states and counts from the last check.
+     * Monitors not seen in the check are reported as "Missing",
+     * monitors with invalid configuration as "Disabled".
+     */
+    private void updateGauges() {
+        final Map<Monitor, String> current = new HashMap<>();
+        for (PerSource ps : groups.getData()) {
+            ps.getStates().collectStates(current);
+        }
+        final List<SubscriptionState> snapshot = new ArrayList<>();
+        final Map<String, Integer> states = new HashMap<>();
+        int pending = 0;
+        for (PerSource ps : groups.getData()) {
+            for (Monitor m : ps.allMonitors()) {
+                String state = m.isEnabled() ? current.get(m) : "Disabled";
+                if (state == null)
+                    state = "Missing";
+                snapshot.add(new SubscriptionState(m, state));
+                states.merge(state, 1, Integer::sum);
+                if (m.isRepairNeeded())
+                    ++pending;
+            }
+        }
+        subscriptionStates = Collections.unmodifiableList(snapshot);
+        // States no longer seen drop to zero
+        for (Map.Entry<String, AtomicLong> me : SUBSCRIPTIONS.getMetrics().entrySet()) {
+            if (! states.containsKey(me.getKey()))
+                me.getValue().set(0L);
+        }
+        for (Map.Entry<String, Integer> me : states.entrySet()) {
+            SUBSCRIPTIONS.get(me.getKey()).set(me.getValue());
+        }
+        PENDING.get().set(pending);
+    }
+
+    /**
+     * Identify any fixable failed subscriptions.
+     * Source datastores are checked in parallel when configured,
+     * each check using its own Access Server session.
+     * Source datastores with the repair in progress are skipped.
      * @return List of source datastores containing fixable subscriptions
      */
     private List<PerSource> checkPending() {
-        List<PerSource> pending = null;
+        final List<PerSource> sources = new ArrayList<>();
         for (PerSource ps : groups.getData()) {
             if (!ps.isFullyEnabled())
                 continue; // skip groups without valid monitors
-            // Connect to access server for each source datastore
-            try (Script script = openScript()) {
-                if (script!=null) {
-                    // Validate monitors in each group
-                    if ( new PendingChecker(globals, ps, script) . check() ) {
-                        if (pending==null)
-                            pending = new ArrayList<>();
-                        pending.add(ps);
-                    }
-                    // log the recovery if there were previous errors
-                    ps.setCheckSuccess();
+            if (repairs.isBusy(ps))
+                continue; // skip groups being repaired
+            sources.add(ps);
+        }
+        final boolean[] results = new boolean[sources.size()];
+        // Control requests are served between the sources,
+        // so that they do not wait for the whole check.
+        if (checkPool == null || sources.size() < 2) {
+            for (int i = 0; i < sources.size(); ++i) {
+                results[i] = checkSource(sources.get(i));
+                runControlTasks();
+            }
+        } else {
+            final List<Future<Boolean>> futures = new ArrayList<>(sources.size());
+            checking.addAll(sources);
+            try {
+                for (PerSource ps : sources) {
+                    futures.add(checkPool.submit(() -> checkSource(ps)));
+                }
+                for (int i = 0; i < sources.size(); ++i) {
+                    results[i] = waitCheck(sources.get(i), futures.get(i));
+                    checking.remove(sources.get(i));
+                    runControlTasks();
                 }
-            } catch(Exception ex) {
-                // log the error with suppressions
-                ps.reportCheckError(ex);
+            } finally {
+                checking.clear();
+            }
+        }
+        // Merge the results in the configuration order
+        List<PerSource> pending = null;
+        for (int i = 0; i < sources.size(); ++i) {
+            if (results[i]) {
+                if (pending==null)
+                    pending = new ArrayList<>();
+                pending.add(sources.get(i));
             }
         }
         return pending;
     }
 
     /**
-     * Run the repairman on the specified source datastore.
+     * Check the subscriptions of a single source datastore.
      * @param ps Per-source collection of monitors
+     * @return true, if there are subscriptions to be recovered
      */
-    private void repair(PerSource ps) {
+    private boolean checkSource(PerSource ps) {
+        // Connect to access server for each source datastore
         try (Script script = openScript()) {
-            if (script != null)
-                new Repairman(globals, ps, script) . run();
+            if (script==null)
+                return false;
+            // Validate monitors in the group
+            boolean retval = new PendingChecker(globals, ps, script) . check();
+            // log the recovery if there were previous errors
+            ps.setCheckSuccess();
+            return retval;
         } catch(Exception ex) {
-            LOG.error("Repair sequence failed for datastore {}",
-                    ps.getSource().getName(), ex);
+            // log the error with suppressions
+            ps.reportCheckError(ex);
+            return false;
+        }
+    }
+
+    private static boolean waitCheck(PerSource ps, Future<Boolean> f) {
+        try {
+            return f.get();
+        } catch(InterruptedException ix) {
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            return false;
+        } catch(ExecutionException ex) {
+            ps.reportCheckError(ex.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Start the local control endpoint, if configured.
+     * The worker runs without it if the port cannot be bound.
+     * @return Control endpoint, or null
+     */
+    private ControlServer startControl() {
+        if (globals.getControlPort() <= 0)
+            return null;
+        try {
+            return ControlServer.start(globals.getControlPort(),
+                    ControlServer.tokenFile(globals.getDataFile()), this);
+        } catch(IOException ix) {
+            LOG.warn("Cannot start the control endpoint on port {}, "
+                    + "continuing without it\n\t{}",
+                    globals.getControlPort(), ix.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Start the metrics endpoint, if configured.
+     * The worker runs without it if the port cannot be bound.
+     * @return Metrics endpoint, or null
+     */
+    private MetricsServer startMetrics() {
+        if (globals.getMetricsPort() <= 0)
+            return null;
+        try {
+            return MetricsServer.start(globals.getMetricsPort(), this::collectMetrics);
+        } catch(IOException ix) {
+            LOG.warn("Cannot start the metrics endpoint on port {}, "
+                    + "continuing without it\n\t{}",
+                    globals.getMetricsPort(), ix.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Write the per-subscription metrics from the published snapshot.
+     * Runs in the metrics endpoint thread.
+     * @param writer Output
+     */
+    private void collectMetrics(PrometheusWriter writer) {
+        OutageTracker.getInstance().collect(writer);
+        final List<SubscriptionState> snapshot = subscriptionStates;
+        if (snapshot.isEmpty())
+            return;
+        writer.header("subscription_state", "gauge",
+                "Replication state of the monitored subscription, as of the last check");
+        for (SubscriptionState ss : snapshot) {
+            writer.sample("subscription_state", 1L, "source", ss.source,
+                    "target", ss.target, "subscription", ss.name, "state", ss.state);
+        }
+        writer.header("subscription_repair_pending", "gauge",
+                "1 if the subscription is waiting for repair, 0 otherwise");
+        for (SubscriptionState ss : snapshot) {
+            writer.sample("subscription_repair_pending", ss.pending ? 1L : 0L,
+                    "source", ss.source, "target", ss.target, "subscription", ss.name);
         }
     }
 
     /**
-     * Create the embedded scriptiong object with the Access Server connection.
+     * Execute the queued control requests in the working thread,
+     * so that the monitors are not accessed concurrently.
+     */
+    private void runControlTasks() {
+        FutureTask<String> task;
+        while ((task = controlTasks.poll()) != null)
+            task.run();
+    }
+
+    /**
+     * Pass the control request to the working thread, and wait for the result.
+     * @param action Request action
+     * @return Request result
+     */
+    private String runControlTask(Callable<String> action) {
+        // Fail fast instead of waiting for the validation to complete
+        if (! configValidated)
+            throw new IllegalStateException("Configuration is not validated yet");
+        final FutureTask<String> task = new FutureTask<>(action);
+        controlTasks.add(task);
+        FileFlag.wakeUp();
+        try {
+            return task.get(globals.getCommandTimeout(), TimeUnit.MILLISECONDS);
+        } catch(InterruptedException ix) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Request interrupted");
+        } catch(TimeoutException tx) {
+            throw new IllegalStateException("Request is still running, "
+                    + "check the worker log for results");
+        } catch(CancellationException cx) {
+            throw new IllegalStateException("Worker is shutting down");
+        } catch(ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Current state of the datastores and subscriptions, one line per object.
+     * The values are read without synchronization with the working cycle,
+     * so they may be slightly out of date.
+     * @return Status text
+     */
+    @Override
+    public String status() {
+        final MonitorGroups current = groups;
+        final StringBuilder sb = new StringBuilder();
+        sb.append("worker version=").append(VERSION)
+                .append(" validated=").append(configValidated)
+                .append(" shutdown=").append(flagShutdown.isEnabled())
+                .append(" reload=").append(flagReload.isEnabled() || reloadPending)
+                .append('\n');
+        final Map<String, PerEngine> engines = new TreeMap<>(current.getEngines());
+        for (PerEngine e : engines.values()) {
+            sb.append("engine ").append(e.getName())
+                    .append(" enabled=").append(e.isEnabled())
+                    .append(" mode=").append(e.getMode())
+                    .append(" type=").append(e.getEngineType())
+                    .append(" version=").append(e.getEngineVersion())
+                    .append('\n');
+        }
+        for (PerSource ps : current.getData()) {
+            final List<Monitor> monitors = ps.allMonitors();
+            int pending = 0;
+            for (Monitor m : monitors) {
+                if (m.isRepairNeeded())
+                    ++pending;
+            }
+            sb.append("source ").append(ps.getName())
+                    .append(" enabled=").append(ps.isFullyEnabled())
+                    .append(" repairing=").append(repairs.isBusy(ps))
+                    .append(" pending=").append(pending)
+                    .append('\n');
+            for (Monitor m : monitors) {
+                final long failureTime = m.getFailureTime();
+                sb.append("subscription ").append(m.getSubscription().getName())
+                        .append(" source=").append(m.getSource().getName())
+                        .append(" target=").append(m.getTarget().getName())
+                        .append(" enabled=").append(m.isEnabled())
+                        .append(" known=").append(m.isKnown())
+                        .append(" repair=").append(m.getRepair())
+                        .append(" altered=").append(m.getAlteredTables().size())
+                        .append(" failed=").append((failureTime == 0L) ? "-"
+                                : Instant.ofEpochMilli(failureTime).toString())
+                        .append('\n');
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    @Override
+    public void requestReload() {
+        LOG.info("Configuration reload requested through the control endpoint");
+        flagReload.enable();
+        FileFlag.wakeUp();
+    }
+
+    @Override
+    public void requestShutdown() {
+        LOG.info("Shutdown requested through the control endpoint");
+        flagShutdown.enable();
+        FileFlag.wakeUp();
+    }
+
+    /**
+     * Check the source datastore out of schedule.
+     * Repairs found are scheduled by the next monitoring cycle,
+     * after the usual re-check.
+     * @param source Source datastore name
+     * @return Check results
+     */
+    @Override
+    public String requestCheck(String source) {
+        return runControlTask(() -> {
+            final PerSource ps = findControlSource(source);
+            LOG.info("Check of source datastore {} requested through the control endpoint", ps);
+            if (! checkSource(ps))
+                return "No repairs needed for source datastore " + ps;
+            return "Repairs pending for source datastore " + ps + ": "
+                    + ps.pendingMonitors();
+        });
+    }
+
+    /**
+     * Check the source datastore of the subscription out of schedule,
+     * ignoring the pause after the failed repair attempt,
+     * and start the repair immediately if needed.
+     * All pending subscriptions of the source datastore are repaired.
+     * @param subscription Subscription name
+     * @return Check results
+     */
+    @Override
+    public String requestRepair(String subscription) {
+        return runControlTask(() -> {
+            Monitor m = null;
+            for (PerSource ps : groups.getData()) {
+                m = ps.findMonitor(subscription);
+                if (m != null)
+                    break;
+            }
+            if (m == null)
+                throw new IllegalArgumentException("Unknown subscription " + subscription);
+            if (reloadPending)
+                throw new IllegalStateException("Configuration reload is pending, "
+                        + "repairs are deferred until it completes");
+            final PerSource ps = findControlSource(m.getSource().getName());
+            if (! m.isEnabled())
+                throw new IllegalStateException("Subscription " + m + " is disabled");
+            LOG.info("Repair of subscription {} requested through the control endpoint", m);
+            // Explicit request overrides the pause after the failed repair
+            m.setFailureTime(0L);
+            checkSource(ps);
+            if (! m.isRepairNeeded())
+                return "No repair needed for subscription " + m;
+            final List<Monitor> pending = ps.pendingMonitors();
+            repairs.submit(Collections.singletonList(ps));
+            return "Repair scheduled for source datastore " + ps
+                    + ", subscriptions " + pending;
+        });
+    }
+
+    @Override
+    public String outages(String source, String subscription) {
+        return OutageTracker.getInstance().report(source, subscription, OUTAGES_LISTED);
+    }
+
+    /**
+     * Find the source datastore for the control request,
+     * and check that it can be checked right now.
+     * @param name Source datastore name
+     * @return Source datastore
+     */
+    private PerSource findControlSource(String name) {
+        if (! configValidated)
+            throw new IllegalStateException("Configuration is not validated yet");
+        final PerSource retval = groups.findSource(name);
+        if (retval == null)
+            throw new IllegalArgumentException("Unknown source datastore " + name);
+        if (! retval.isFullyEnabled())
+            throw new IllegalStateException("Source datastore " + retval + " is disabled");
+        if (repairs.isBusy(retval))
+            throw new IllegalStateException("Repair in progress for source datastore " + retval);
+        if (checking.contains(retval))
+            throw new IllegalStateException("Check in progress for source datastore " + retval);
+        return retval;
+    }
+
+    /**
+     * Grab the embedded scripting object with the Access Server connection
+     * from the session pool. Closing the object returns it to the pool.
      * @return Script object, or null if connection has failed.
      */
     public Script openScript() {
         try {
-            final Script retval = new Script(globals);
-            if (suppressConnectErrorMessage) {
-                suppressConnectErrorMessage = false;
+            final Script retval = scriptPool.borrow();
+            if (suppressConnectErrorMessage.compareAndSet(true, false)) {
                 LOG.info("Re-established connection to the Access Server");
             }
             return retval;
         } catch(Exception ex) {
-            if (!suppressConnectErrorMessage) {
-                suppressConnectErrorMessage = true;
+            if (suppressConnectErrorMessage.compareAndSet(false, true)) {
                 final String TEXT = "Failed to connect to the Access Server";
                 if (ex instanceof EmbeddedScriptException) {
                     LOG.warn("{}.\n{}", TEXT,
@@ -248,4 +755,23 @@ public class Worker extends Version implements Runnable {
         }
     }
 
+    /**
+     * Immutable state of the monitored subscription, as of the last check.
+     */
+    private static final class SubscriptionState {
+        final String source;
+        final String target;
+        final String name;
+        final String state;
+        final boolean pending;
+
+        SubscriptionState(Monitor m, String state) {
+            this.source = m.getSource().getName();
+            this.target = m.getTarget().getName();
+            this.name = m.getSubscription().getName();
+            this.state = state;
+            this.pending = m.isRepairNeeded();
+        }
+    }
+
 }
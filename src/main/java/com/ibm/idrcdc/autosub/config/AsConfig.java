@@ -22,10 +22,14 @@
 package com.ibm.idrcdc.autosub.config;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Monitoring configuration.
@@ -35,13 +39,17 @@ public class AsConfig {
 
     private final Map<String, AsEngine> engines = new HashMap<>();
     private final List<AsSubscription> subscriptions = new ArrayList<>();
+    // engines referenced by the subscriptions, maintained in addSubscription()
+    private final Set<AsEngine> usedEngines =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<String> usedNames = new HashSet<>();
 
     public Map<String, AsEngine> getEngines() {
         return engines;
     }
 
     public List<AsSubscription> getSubscriptions() {
-        return subscriptions;
+        return Collections.unmodifiableList(subscriptions);
     }
 
     public AsEngine getEngine(String name) {
@@ -54,30 +62,20 @@ public class AsConfig {
 
     public void addSubscription(AsSubscription as) {
         subscriptions.add(as);
+        usedEngines.add(as.getSource());
+        usedEngines.add(as.getTarget());
+        usedNames.add(Misc.nameKey(as.getSource().getName()));
+        usedNames.add(Misc.nameKey(as.getTarget().getName()));
     }
 
     public boolean isEngineUsed(AsEngine engine) {
         if (engine==null)
             return false;
-        for (AsSubscription sub : subscriptions) {
-            if (engine == sub.getSource())
-                return true;
-            if (engine == sub.getTarget())
-                return true;
-        }
-        return false;
+        return usedEngines.contains(engine);
     }
 
     public boolean isEngineUsed(String name) {
-        if (name==null)
-            name = "";
-        for (AsSubscription sub : subscriptions) {
-            if (name.equalsIgnoreCase(sub.getSource().getName()))
-                return true;
-            if (name.equalsIgnoreCase(sub.getTarget().getName()))
-                return true;
-        }
-        return false;
+        return usedNames.contains(Misc.nameKey(name));
     }
 
     @Override
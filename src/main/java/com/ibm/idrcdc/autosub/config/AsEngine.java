@@ -21,6 +21,8 @@
  */
 package com.ibm.idrcdc.autosub.config;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -33,6 +35,8 @@ public class AsEngine {
     private final EngineMode mode;
 
     private String remoteExec;
+    private TransportType transport = TransportType.Process;
+    private final List<AsScriptedReply> scriptedReplies = new ArrayList<>();
     private String engineInstallDir;
     private String instanceName;
 
@@ -64,6 +68,28 @@ public class AsEngine {
         this.remoteExec = remoteExec;
     }
 
+    /**
+     * @return Transport used to run the engine commands
+     */
+    public TransportType getTransport() {
+        return transport;
+    }
+
+    public void setTransport(TransportType transport) {
+        this.transport = (transport==null) ? TransportType.Process : transport;
+    }
+
+    /**
+     * @return Replies of the scripted transport, in the matching order
+     */
+    public List<AsScriptedReply> getScriptedReplies() {
+        return scriptedReplies;
+    }
+
+    public void addScriptedReply(AsScriptedReply reply) {
+        scriptedReplies.add(reply);
+    }
+
     public String getEngineInstallDir() {
         return engineInstallDir;
     }
@@ -153,6 +179,12 @@ public class AsEngine {
         if (!Objects.equals(this.remoteExec, other.remoteExec)) {
             return false;
         }
+        if (this.transport != other.transport) {
+            return false;
+        }
+        if (!Objects.equals(this.scriptedReplies, other.scriptedReplies)) {
+            return false;
+        }
         if (!Objects.equals(this.engineInstallDir, other.engineInstallDir)) {
             return false;
         }
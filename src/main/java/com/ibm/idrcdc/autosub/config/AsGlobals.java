@@ -44,6 +44,27 @@ public class AsGlobals {
     private long pauseAfterError;
     private long pauseBeforeRepair;
     private boolean grabBookmarks;
+    private int checkThreads;
+    private int repairThreads;
+    private int sessionPoolSize;
+    private long sessionValidatePeriod;
+    private long mappingTtl;
+    private int readdThreads;
+    private int restartThreads;
+    private int restartPerTarget;
+    private long stopTimeout;
+    private long stopEscalate;
+    private long commandTimeout;
+    private long connectTimeout;
+    private long remoteTimeout;
+    private int remoteOutputLines;
+    private int channelPoolSize;
+    private int validateThreads;
+    private long probeTtl;
+    private boolean flagWatch;
+    private int controlPort;
+    private int metricsPort;
+    private int outageHistory;
 
     /**
      * Constructor for the manual setup.
@@ -61,6 +82,27 @@ public class AsGlobals {
         this.pauseAfterError = 30000L;
         this.pauseBeforeRepair = 5000L;
         this.grabBookmarks = false;
+        this.checkThreads = 4;
+        this.repairThreads = 2;
+        this.sessionPoolSize = 6;
+        this.sessionValidatePeriod = 60000L;
+        this.mappingTtl = 3600000L;
+        this.readdThreads = 4;
+        this.restartThreads = 4;
+        this.restartPerTarget = 2;
+        this.stopTimeout = 600000L;
+        this.stopEscalate = 120000L;
+        this.commandTimeout = 300000L;
+        this.connectTimeout = 60000L;
+        this.remoteTimeout = 1800000L;
+        this.remoteOutputLines = 1000;
+        this.channelPoolSize = 2;
+        this.validateThreads = 4;
+        this.probeTtl = 86400000L;
+        this.flagWatch = true;
+        this.controlPort = 0;
+        this.metricsPort = 0;
+        this.outageHistory = 10000;
     }
 
     /**
@@ -84,6 +126,48 @@ public class AsGlobals {
                 Long.parseLong(props.getProperty("tool.pause_before_repair", "5000"));
         this.grabBookmarks =
                 Misc.parseBoolean(props.getProperty("tool.grab_bookmarks", "false"), false);
+        this.checkThreads =
+                Integer.parseInt(props.getProperty("tool.check_threads", "4"));
+        this.repairThreads =
+                Integer.parseInt(props.getProperty("tool.repair_threads", "2"));
+        this.sessionPoolSize =
+                Integer.parseInt(props.getProperty("tool.session_pool_size", "6"));
+        this.sessionValidatePeriod =
+                Long.parseLong(props.getProperty("tool.session_validate_period", "60000"));
+        this.mappingTtl =
+                Long.parseLong(props.getProperty("tool.mapping_ttl", "3600000"));
+        this.readdThreads =
+                Integer.parseInt(props.getProperty("tool.readd_threads", "4"));
+        this.restartThreads =
+                Integer.parseInt(props.getProperty("tool.restart_threads", "4"));
+        this.restartPerTarget =
+                Integer.parseInt(props.getProperty("tool.restart_per_target", "2"));
+        this.stopTimeout =
+                Long.parseLong(props.getProperty("tool.stop_timeout", "600000"));
+        this.stopEscalate =
+                Long.parseLong(props.getProperty("tool.stop_escalate", "120000"));
+        this.commandTimeout =
+                Long.parseLong(props.getProperty("tool.command_timeout", "300000"));
+        this.connectTimeout =
+                Long.parseLong(props.getProperty("tool.connect_timeout", "60000"));
+        this.remoteTimeout =
+                Long.parseLong(props.getProperty("tool.remote_timeout", "1800000"));
+        this.remoteOutputLines =
+                Integer.parseInt(props.getProperty("tool.remote_output_lines", "1000"));
+        this.channelPoolSize =
+                Integer.parseInt(props.getProperty("tool.channel_pool_size", "2"));
+        this.validateThreads =
+                Integer.parseInt(props.getProperty("tool.validate_threads", "4"));
+        this.probeTtl =
+                Long.parseLong(props.getProperty("tool.probe_ttl", "86400000"));
+        this.flagWatch =
+                Misc.parseBoolean(props.getProperty("tool.flag_watch", "true"), true);
+        this.controlPort =
+                Integer.parseInt(props.getProperty("tool.control_port", "0"));
+        this.metricsPort =
+                Integer.parseInt(props.getProperty("tool.metrics_port", "0"));
+        this.outageHistory =
+                Integer.parseInt(props.getProperty("tool.outage_history", "10000"));
     }
 
     public String getAccessServerAddress() {
@@ -182,6 +266,174 @@ public class AsGlobals {
         this.grabBookmarks = grabBookmarks;
     }
 
+    public int getCheckThreads() {
+        return checkThreads;
+    }
+
+    public void setCheckThreads(int checkThreads) {
+        this.checkThreads = checkThreads;
+    }
+
+    public int getRepairThreads() {
+        return repairThreads;
+    }
+
+    public void setRepairThreads(int repairThreads) {
+        this.repairThreads = repairThreads;
+    }
+
+    public int getSessionPoolSize() {
+        return sessionPoolSize;
+    }
+
+    public void setSessionPoolSize(int sessionPoolSize) {
+        this.sessionPoolSize = sessionPoolSize;
+    }
+
+    public long getSessionValidatePeriod() {
+        return sessionValidatePeriod;
+    }
+
+    public void setSessionValidatePeriod(long sessionValidatePeriod) {
+        this.sessionValidatePeriod = sessionValidatePeriod;
+    }
+
+    public long getMappingTtl() {
+        return mappingTtl;
+    }
+
+    public void setMappingTtl(long mappingTtl) {
+        this.mappingTtl = mappingTtl;
+    }
+
+    public int getReaddThreads() {
+        return readdThreads;
+    }
+
+    public void setReaddThreads(int readdThreads) {
+        this.readdThreads = readdThreads;
+    }
+
+    public int getRestartThreads() {
+        return restartThreads;
+    }
+
+    public void setRestartThreads(int restartThreads) {
+        this.restartThreads = restartThreads;
+    }
+
+    public int getRestartPerTarget() {
+        return restartPerTarget;
+    }
+
+    public void setRestartPerTarget(int restartPerTarget) {
+        this.restartPerTarget = restartPerTarget;
+    }
+
+    public long getStopTimeout() {
+        return stopTimeout;
+    }
+
+    public void setStopTimeout(long stopTimeout) {
+        this.stopTimeout = stopTimeout;
+    }
+
+    public long getStopEscalate() {
+        return stopEscalate;
+    }
+
+    public void setStopEscalate(long stopEscalate) {
+        this.stopEscalate = stopEscalate;
+    }
+
+    public long getCommandTimeout() {
+        return commandTimeout;
+    }
+
+    public void setCommandTimeout(long commandTimeout) {
+        this.commandTimeout = commandTimeout;
+    }
+
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public long getRemoteTimeout() {
+        return remoteTimeout;
+    }
+
+    public void setRemoteTimeout(long remoteTimeout) {
+        this.remoteTimeout = remoteTimeout;
+    }
+
+    public int getRemoteOutputLines() {
+        return remoteOutputLines;
+    }
+
+    public void setRemoteOutputLines(int remoteOutputLines) {
+        this.remoteOutputLines = remoteOutputLines;
+    }
+
+    public int getChannelPoolSize() {
+        return channelPoolSize;
+    }
+
+    public void setChannelPoolSize(int channelPoolSize) {
+        this.channelPoolSize = channelPoolSize;
+    }
+
+    public int getValidateThreads() {
+        return validateThreads;
+    }
+
+    public void setValidateThreads(int validateThreads) {
+        this.validateThreads = validateThreads;
+    }
+
+    public long getProbeTtl() {
+        return probeTtl;
+    }
+
+    public void setProbeTtl(long probeTtl) {
+        this.probeTtl = probeTtl;
+    }
+
+    public boolean isFlagWatch() {
+        return flagWatch;
+    }
+
+    public void setFlagWatch(boolean flagWatch) {
+        this.flagWatch = flagWatch;
+    }
+
+    public int getControlPort() {
+        return controlPort;
+    }
+
+    public void setControlPort(int controlPort) {
+        this.controlPort = controlPort;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    public int getOutageHistory() {
+        return outageHistory;
+    }
+
+    public void setOutageHistory(int outageHistory) {
+        this.outageHistory = outageHistory;
+    }
+
     public static AsGlobals fromArgs(String[] args) throws Exception {
         String configFile = args.length == 0 ? null : args[0];
         if (StringUtils.isBlank(configFile))
@@ -51,6 +51,8 @@ public class AsParser {
     public static final String EL_ENG_RSH = "cdc-rsh";
     public static final String EL_ENG_INST = "cdc-instance";
     public static final String EL_ENG_PATH = "cdc-path";
+    public static final String EL_ENG_TRANSPORT = "cdc-transport";
+    public static final String EL_REPLY = "reply";
     public static final String EL_CMD_VERSION = "cmd-version";
     public static final String EL_CMD_EVENTS = "cmd-events";
     public static final String EL_CMD_CLEAR = "cmd-clear";
@@ -86,8 +88,15 @@ public class AsParser {
                 EngineMode.fromString(Misc.getAttr(el, "mode")));
         Element cur;
         cur = el.getChild(EL_ENG_RSH);
-        if (cur!=null)
+        if (cur!=null) {
             ae.setRemoteExec(Misc.getText(cur));
+            // Shorthand for the channel transport
+            if (Misc.getAttr(cur, "persistent", false))
+                ae.setTransport(TransportType.Channel);
+        }
+        cur = el.getChild(EL_ENG_TRANSPORT);
+        if (cur!=null)
+            parseTransport(ae, cur);
         cur = el.getChild(EL_ENG_PATH);
         if (cur!=null)
             ae.setEngineInstallDir(Misc.getText(cur));
@@ -115,11 +124,42 @@ public class AsParser {
         return ae;
     }
 
+    private static void parseTransport(AsEngine ae, Element el) {
+        ae.setTransport(TransportType.fromString(Misc.getAttr(el, "type")));
+        for (Element cur : el.getChildren(EL_REPLY)) {
+            ae.addScriptedReply(new AsScriptedReply(
+                    Misc.getAttr(cur, "match", null),
+                    Integer.parseInt(Misc.getAttr(cur, "code", "0")),
+                    Long.parseLong(Misc.getAttr(cur, "delay", "0")),
+                    Misc.getText(cur)));
+        }
+    }
+
+    private static Element formatTransport(AsEngine ae) {
+        Element cur = new Element(EL_ENG_TRANSPORT);
+        cur.setAttribute("type", ae.getTransport().name());
+        for (AsScriptedReply r : ae.getScriptedReplies()) {
+            Element reply = new Element(EL_REPLY);
+            if (r.getMatch() != null)
+                reply.setAttribute("match", r.getMatch());
+            reply.setAttribute("code", String.valueOf(r.getCode()));
+            if (r.getDelay() > 0L)
+                reply.setAttribute("delay", String.valueOf(r.getDelay()));
+            if (!StringUtils.isBlank(r.getOutput()))
+                reply.addContent(new CDATA(r.getOutput()));
+            cur.addContent(reply);
+        }
+        return cur;
+    }
+
     private static Element formatEngine(AsEngine ae) {
         Element cur = new Element(EL_ENGINE);
         cur.setAttribute("name", ae.getName());
         cur.setAttribute("mode", ae.getMode().name());
         addNonBlankText(cur, EL_ENG_RSH, ae.getRemoteExec());
+        if (ae.getTransport() != TransportType.Process
+                || !ae.getScriptedReplies().isEmpty())
+            cur.addContent(formatTransport(ae));
         addNonBlankText(cur, EL_ENG_PATH, ae.getEngineInstallDir());
         addNonBlankText(cur, EL_ENG_INST, ae.getInstanceName());
         addNonBlankText(cur, EL_CMD_VERSION, ae.getCommandVersion());
@@ -0,0 +1,99 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.config;
+
+import java.util.Objects;
+
+/**
+ * Canned reply of the scripted transport to the engine command.
+ * @author zinal
+ */
+public class AsScriptedReply {
+
+    private final String match;
+    private final int code;
+    private final long delay;
+    private final String output;
+
+    /**
+     * @param match Regular expression to be found in the command line,
+     *   or null to match any command
+     * @param code Exit code to be reported
+     * @param delay Simulated execution time, milliseconds
+     * @param output Command output, or null
+     */
+    public AsScriptedReply(String match, int code, long delay, String output) {
+        this.match = match;
+        this.code = code;
+        this.delay = delay;
+        this.output = output;
+    }
+
+    public String getMatch() {
+        return match;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public long getDelay() {
+        return delay;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 41 * hash + Objects.hashCode(this.match);
+        hash = 41 * hash + this.code;
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final AsScriptedReply other = (AsScriptedReply) obj;
+        if (this.code != other.code) {
+            return false;
+        }
+        if (this.delay != other.delay) {
+            return false;
+        }
+        if (!Objects.equals(this.match, other.match)) {
+            return false;
+        }
+        return Objects.equals(this.output, other.output);
+    }
+
+}
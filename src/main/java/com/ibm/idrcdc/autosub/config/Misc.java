@@ -21,6 +21,7 @@
  */
 package com.ibm.idrcdc.autosub.config;
 
+import java.util.Locale;
 import org.apache.commons.lang3.StringUtils;
 import org.jdom2.Element;
 
@@ -60,6 +61,16 @@ public class Misc {
         }
     }
 
+    /**
+     * Convert the datastore or subscription name to the lookup key.
+     * CDC object names are case insensitive.
+     * @param name Object name
+     * @return Key for the hash lookups
+     */
+    public static String nameKey(String name) {
+        return (name==null) ? "" : name.toUpperCase(Locale.ROOT);
+    }
+
     public static boolean getAttr(Element el, String name, boolean defval) {
         return parseBoolean(el.getAttributeValue(name), defval);
     }
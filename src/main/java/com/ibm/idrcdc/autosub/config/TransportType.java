@@ -0,0 +1,63 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.config;
+
+/**
+ * Transport used to run the engine commands (dmshowversion, etc.)
+ * @author zinal
+ */
+public enum TransportType {
+
+    /**
+     * Separate process for each command, the default.
+     */
+    Process,
+
+    /**
+     * Persistent remote shell channel, with the fallback
+     * to the separate processes.
+     */
+    Channel,
+
+    /**
+     * In-process scripted replies, for local benchmarks and tests.
+     */
+    Scripted;
+
+    public static TransportType fromString(String value) {
+        if (value==null)
+            return null;
+        value = value.trim();
+        if (value.length()==0)
+            return null;
+        if ("Process".equalsIgnoreCase(value))
+            return Process;
+        if ("Channel".equalsIgnoreCase(value))
+            return Channel;
+        if ("Persistent".equalsIgnoreCase(value))
+            return Channel;
+        if ("Scripted".equalsIgnoreCase(value))
+            return Scripted;
+        throw new IllegalArgumentException("Not a TransportType: " + value);
+    }
+
+}
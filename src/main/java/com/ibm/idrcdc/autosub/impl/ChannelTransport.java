@@ -0,0 +1,82 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.io.IOException;
+import com.ibm.idrcdc.autosub.monitor.PerEngine;
+
+/**
+ * Transport running the commands through the persistent remote shell
+ * channel of the engine. Commands which cannot be run that way,
+ * and commands for the engines without the working channel,
+ * are passed to the fallback transport.
+ * @author zinal
+ */
+public class ChannelTransport implements RemoteTransport {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(ChannelTransport.class);
+
+    private final ShellChannelPool channels;
+    private final RemoteTransport fallback;
+
+    public ChannelTransport(ShellChannelPool channels, RemoteTransport fallback) {
+        this.channels = channels;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String getName() {
+        return "channel";
+    }
+
+    @Override
+    public int execute(RemoteTool tool, OutputBuffer output) {
+        final PerEngine engine = tool.getEngine();
+        final String remote = (engine == null) ? null
+                : engine.getChannelCommand(tool.getCommandText());
+        if (remote == null)
+            return fallback.execute(tool, output);
+        final ShellChannel channel = channels.borrow(engine.getEngine());
+        if (channel == null)
+            return fallback.execute(tool, output);
+        final String command = tool.substitute(remote);
+        LOG.debug("Running the command [{}] through the channel to {}",
+                command, engine.getName());
+        try {
+            final int retCode = channel.run(command, output, tool.getTimeout());
+            tool.setExecuted("[channel " + engine.getName() + "] " + command);
+            if (retCode == RemoteTool.CODE_TIMEOUT) {
+                LOG.error("Command {} timed out after {} msec, dropping the channel to {}",
+                        tool.getLogPrefix(), tool.getTimeout(), engine.getName());
+            }
+            return retCode;
+        } catch(IOException ex) {
+            LOG.debug("Shell channel to {} failed, running separate process",
+                    engine.getName(), ex);
+        } finally {
+            channels.release(channel);
+        }
+        return fallback.execute(tool, output);
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import com.ibm.idrcdc.autosub.config.*;
+
+/**
+ * Classes of CHCCLP commands, used to select the command deadlines.
+ * @author zinal
+ */
+public enum CommandClass {
+
+    /**
+     * Server and datastore connections and context switches.
+     */
+    Connect,
+
+    /**
+     * Read-only commands: list, show, monitor, describe, select.
+     */
+    Query,
+
+    /**
+     * Subscription start and stop commands, which may wait for completion.
+     */
+    Control,
+
+    /**
+     * All other commands, which modify the metadata.
+     */
+    Update;
+
+    private static final Pattern WAIT_SECONDS =
+            Pattern.compile("\\swait\\s+([0-9]+)");
+
+    /**
+     * Determine the class of the command.
+     * @param command CHCCLP command text
+     * @return Command class
+     */
+    public static CommandClass classify(String command) {
+        final String cmd = command.trim().toLowerCase(Locale.ROOT);
+        if (cmd.startsWith("connect ") || cmd.startsWith("disconnect ")
+                || cmd.startsWith("select datastore "))
+            return Connect;
+        if (cmd.startsWith("start ") || cmd.startsWith("end replication"))
+            return Control;
+        if (cmd.startsWith("list ") || cmd.startsWith("show ")
+                || cmd.startsWith("monitor ") || cmd.startsWith("describe ")
+                || cmd.startsWith("select "))
+            return Query;
+        return Update;
+    }
+
+    // verbs of the commands issued by the tool, matched without allocations
+    private static final String[] VERBS = {
+        "connect server", "connect datastore", "disconnect server",
+        "disconnect datastore", "select datastore", "select subscription",
+        "select table", "list datastores", "list subscription", "list source",
+        "list table", "show context", "show subscription",
+        "describe subscription", "monitor replication", "start mirroring",
+        "end replication", "lock subscription", "unlock subscription",
+        "flag refresh", "reassign table", "filter source"
+    };
+
+    /**
+     * Extract the command verb, used to group the command statistics:
+     * the first two words, e.g. "monitor replication".
+     * Called for each command, so the known verbs are returned
+     * as the constants, without building any strings.
+     * @param command CHCCLP command text
+     * @return Command verb in lower case
+     */
+    public static String verb(String command) {
+        final int start1 = skipSpaces(command, 0);
+        final int end1 = wordEnd(command, start1);
+        if (end1 == start1)
+            return "";
+        final int start2 = skipSpaces(command, end1);
+        final int end2 = wordEnd(command, start2);
+        for (String v : VERBS) {
+            if (isVerb(v, command, start1, end1, start2, end2))
+                return v;
+        }
+        // Not a known verb, so build it
+        final String first = command.substring(start1, end1).toLowerCase(Locale.ROOT);
+        if (end2 == start2)
+            return first;
+        return first + " " + command.substring(start2, end2).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isVerb(String v, String command,
+            int start1, int end1, int start2, int end2) {
+        final int len1 = end1 - start1;
+        final int len2 = end2 - start2;
+        final int space = v.indexOf(' ');
+        if (len2 == 0)
+            return space < 0 && v.length() == len1
+                    && v.regionMatches(true, 0, command, start1, len1);
+        return space == len1 && v.length() == len1 + 1 + len2
+                && v.regionMatches(true, 0, command, start1, len1)
+                && v.regionMatches(true, space + 1, command, start2, len2);
+    }
+
+    private static int skipSpaces(String command, int pos) {
+        while (pos < command.length() && Character.isWhitespace(command.charAt(pos)))
+            ++pos;
+        return pos;
+    }
+
+    // words end at whitespace, the quoted names and the command end
+    private static int wordEnd(String command, int pos) {
+        while (pos < command.length()) {
+            final char c = command.charAt(pos);
+            if (Character.isWhitespace(c) || c == ';' || c == '"')
+                break;
+            ++pos;
+        }
+        return pos;
+    }
+
+    /**
+     * Compute the deadline for the command.
+     * Subscription control commands with the "wait N" option
+     * get the N seconds added to the generic deadline.
+     * @param globals Configuration options
+     * @param command CHCCLP command text
+     * @return Command timeout in milliseconds, 0 for no timeout
+     */
+    public static long timeout(AsGlobals globals, String command) {
+        switch (classify(command)) {
+            case Connect:
+                return globals.getConnectTimeout();
+            case Control:
+                if (globals.getCommandTimeout() <= 0L)
+                    return 0L;
+                final Matcher m = WAIT_SECONDS.matcher(command.toLowerCase(Locale.ROOT));
+                if (m.find())
+                    return globals.getCommandTimeout()
+                            + 1000L * Long.parseLong(m.group(1));
+                return globals.getCommandTimeout();
+            default:
+                return globals.getCommandTimeout();
+        }
+    }
+
+}
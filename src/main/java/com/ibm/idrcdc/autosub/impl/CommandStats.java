@@ -0,0 +1,95 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+/**
+ * Execution statistics for one kind of external command.
+ * @author zinal
+ */
+public class CommandStats {
+
+    private final String name;
+    private long count = 0L;
+    private long failures = 0L;
+    private long timeouts = 0L;
+    private long totalMillis = 0L;
+    private long maxMillis = 0L;
+    private int lastCode = 0;
+
+    public CommandStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Register the command execution.
+     * @param millis Execution time
+     * @param code Exit code
+     * @param timedOut true, if the command has been killed on timeout
+     */
+    public synchronized void record(long millis, int code, boolean timedOut) {
+        ++count;
+        if (code != 0)
+            ++failures;
+        if (timedOut)
+            ++timeouts;
+        totalMillis += millis;
+        if (millis > maxMillis)
+            maxMillis = millis;
+        lastCode = code;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized long getTimeouts() {
+        return timeouts;
+    }
+
+    public synchronized long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public synchronized long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public synchronized int getLastCode() {
+        return lastCode;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + ": count " + count + ", failures " + failures
+                + ", timeouts " + timeouts + ", total " + totalMillis
+                + " msec, max " + maxMillis + " msec, last code " + lastCode;
+    }
+
+}
@@ -21,8 +21,16 @@
  */
 package com.ibm.idrcdc.autosub.impl;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import com.ibm.idrcdc.autosub.monitor.*;
@@ -30,6 +38,8 @@ import com.ibm.idrcdc.autosub.config.*;
 
 /**
  * Algorithm to validate configuration settings of subscription monitors.
+ * Datastores and subscriptions may be validated in parallel,
+ * each subscription in its own Access Server session.
  * @author zinal
  */
 public class ConfigValidator implements Runnable {
@@ -39,59 +49,208 @@ public class ConfigValidator implements Runnable {
 
     private final MonitorGroups groups;
     private final Script script;
+    private final Supplier<Script> scripts;
+    private final int threads;
+    private EngineProbeCache probes = null;
+    private boolean incremental = false;
     // datastore name -> datastore mode (Source, Target, Dual)
     private Map<String, EngineMode> knownAgents = null;
 
     public ConfigValidator(MonitorGroups groups, Script script) {
+        this(groups, script, null, 1);
+    }
+
+    /**
+     * Create the validator.
+     * @param groups Monitors to be validated
+     * @param script Main Access Server session
+     * @param scripts Source of extra sessions for the parallel validation,
+     *        or null to use the main session only
+     * @param threads Maximum number of validations running at once
+     */
+    public ConfigValidator(MonitorGroups groups, Script script,
+            Supplier<Script> scripts, int threads) {
         this.groups = groups;
         this.script = script;
+        this.scripts = scripts;
+        this.threads = (scripts == null) ? 1 : Math.max(1, threads);
+    }
+
+    /**
+     * @param probes Cache of the engine probe results, or null
+     */
+    public void setProbes(EngineProbeCache probes) {
+        this.probes = probes;
+    }
+
+    /**
+     * @param incremental true to validate only the datastores and
+     *   subscriptions which are not enabled yet (added, changed or failed
+     *   ones after the configuration reload), false to validate everything
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
     }
 
     @Override
     public void run() {
-        LOG.info("*** Validating datastores...");
-        knownAgents = listKnownAgents();
-        LOG.info("Found total of {} known datastores", knownAgents.size());
-        for (PerEngine engine : groups.getEngines().values()) {
-            try {
-                validate(engine);
-            } catch(Exception ex) {
-                engine.setEnabled(false);
-                LOG.warn("Disabled handling for datastore {}\n\t{}",
-                        engine.getName(), Misc.liteMessage(ex));
+        final long tvStart = System.currentTimeMillis();
+        final ExecutorService pool = (threads > 1) ?
+                Executors.newFixedThreadPool(threads,
+                        new DaemonThreadFactory("autosub-validate")) : null;
+        try {
+            final List<PerEngine> engines = new ArrayList<>();
+            for (PerEngine e : groups.getEngines().values()) {
+                if (!incremental || !e.isEnabled())
+                    engines.add(e);
             }
-        }
-        LOG.info("*** Validating subscriptions...");
-        int countValid = 0;
-        for ( PerSource ps : groups.getData() ) {
-            for ( PerTarget pst : ps.getTargets() ) {
-                for ( Monitor m : pst.getMonitors() ) {
-                    if (m.getSource().isEnabled()==false
-                            || m.getTarget().isEnabled()==false) {
-                        // Skipping subscriptions for disabled datastores
-                        continue;
-                    }
-                    LOG.info("Subscription {}: {} -> {}",
-                            m.getSubscription().getName(),
-                            m.getSource().getName(),
-                            m.getTarget().getName());
-                    try {
-                        validate(m);
-                    } catch(Exception ex) {
-                        m.setEnabled(false);
-                        LOG.warn("Disabled handling for subscription {}\n\t{}",
-                                m.getSubscription().getName(), Misc.liteMessage(ex));
+            if (! engines.isEmpty()) {
+                LOG.info("*** Validating datastores...");
+                knownAgents = listKnownAgents();
+                LOG.info("Found total of {} known datastores", knownAgents.size());
+                runAll(pool, engines, this::validateEngine);
+            }
+            final long tvEngines = System.currentTimeMillis();
+
+            final List<Monitor> monitors = new ArrayList<>();
+            int countValid = 0;
+            for ( PerSource ps : groups.getData() ) {
+                for ( PerTarget pst : ps.getTargets() ) {
+                    for ( Monitor m : pst.getMonitors() ) {
+                        if (incremental && m.isEnabled()) {
+                            // Unchanged subscription, validated before
+                            ++countValid;
+                            continue;
+                        }
+                        if (m.getSource().isEnabled()==false
+                                || m.getTarget().isEnabled()==false) {
+                            // Skipping subscriptions for disabled datastores
+                            m.setEnabled(false);
+                            continue;
+                        }
+                        monitors.add(m);
                     }
-                    // Count the enabled subscriptions
-                    if (m.isEnabled())
-                        ++countValid;
                 }
             }
+            if (! monitors.isEmpty()) {
+                LOG.info("*** Validating subscriptions...");
+                runAll(pool, monitors, this::validateMonitor);
+            }
+            final long tvFinish = System.currentTimeMillis();
+
+            // Count the enabled subscriptions
+            for (Monitor m : monitors) {
+                if (m.isEnabled())
+                    ++countValid;
+            }
+            LOG.info("*** Validation took {} msec: {} datastore(s) in {} msec, "
+                    + "{} subscription(s) in {} msec, {} thread(s).",
+                    tvFinish - tvStart, engines.size(), tvEngines - tvStart,
+                    monitors.size(), tvFinish - tvEngines, threads);
+            if (countValid > 0) {
+                LOG.info("*** Configuration validated, monitoring {} subscription(s).", countValid);
+            } else {
+                LOG.info("*** Empty configuration, nothing to do");
+            }
+        } finally {
+            if (pool != null)
+                pool.shutdownNow();
         }
-        if (countValid > 0) {
-            LOG.info("*** Configuration validated, monitoring {} subscription(s).", countValid);
-        } else {
-            LOG.info("*** Empty configuration, nothing to do");
+    }
+
+    /**
+     * Run the validation for all items, in parallel if the pool is given,
+     * and wait for completion.
+     * Session timeouts are re-thrown after all the items are processed,
+     * as the validation has to be repeated.
+     * @param <T> Item type
+     * @param pool Thread pool, or null for the sequential validation
+     * @param items Items to be validated
+     * @param action Validation action
+     */
+    private static <T> void runAll(ExecutorService pool, List<T> items,
+            Consumer<T> action) {
+        if (pool == null || items.size() < 2) {
+            for (T item : items)
+                action.accept(item);
+            return;
+        }
+        final List<Future<?>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(pool.submit(() -> action.accept(item)));
+        }
+        RuntimeException failure = null;
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch(InterruptedException ix) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Validation interrupted", ix);
+            } catch(ExecutionException ex) {
+                if (failure == null) {
+                    failure = (ex.getCause() instanceof RuntimeException) ?
+                            (RuntimeException) ex.getCause() :
+                            new RuntimeException(ex.getCause());
+                }
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    private void validateEngine(PerEngine engine) {
+        try {
+            validate(engine);
+        } catch(ScriptTimeoutException ste) {
+            // The session is lost, so the validation cannot continue
+            throw ste;
+        } catch(Exception ex) {
+            engine.setEnabled(false);
+            LOG.warn("Disabled handling for datastore {}\n\t{}",
+                    engine.getName(), Misc.liteMessage(ex));
+        }
+    }
+
+    private void validateMonitor(Monitor m) {
+        final int mappingsCount;
+        try {
+            if (threads > 1) {
+                mappingsCount = validateParallel(m);
+            } else {
+                mappingsCount = validate(m, script);
+            }
+        } catch(ScriptTimeoutException ste) {
+            // The session is lost, so the validation cannot continue
+            throw ste;
+        } catch(Exception ex) {
+            m.setEnabled(false);
+            LOG.warn("Disabled handling for subscription {}: {} -> {}\n\t{}",
+                    m.getSubscription().getName(),
+                    m.getSource().getName(),
+                    m.getTarget().getName(),
+                    Misc.liteMessage(ex));
+            return;
+        }
+        LOG.info("Subscription {}: {} -> {}, {} table mapping(s)",
+                m.getSubscription().getName(),
+                m.getSource().getName(),
+                m.getTarget().getName(),
+                mappingsCount);
+    }
+
+    /**
+     * Validate the subscription in its own session.
+     * When no extra session can be obtained, the main one is used.
+     * @param m Subscription monitor
+     * @return Number of table mappings
+     */
+    private int validateParallel(Monitor m) {
+        try (Script extra = scripts.get()) {
+            if (extra != null)
+                return validate(m, extra);
+        }
+        synchronized(script) {
+            return validate(m, script);
         }
     }
 
@@ -103,8 +262,10 @@ public class ConfigValidator implements Runnable {
             return;
         }
 
+        final RemoteTransport transport = RemoteTool.transportFor(e);
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Datastore {} ({}) access commands below:", e.getName(), e.getMode());
+            LOG.debug("Datastore {} ({}) access commands below, {} transport:",
+                    e.getName(), e.getMode(), transport.getName());
             LOG.debug("\tdmshowversion\t{}",           e.cmdVersion());
             LOG.debug("\tdmshowevents\t{}",            e.cmdEvents());
             if (EngineMode.Dual==e.getMode() || EngineMode.Source==e.getMode()) {
@@ -134,41 +295,63 @@ public class ConfigValidator implements Runnable {
             return;
         }
 
+        final boolean cached = (probes != null)
+                && probes.apply(e, ConfigValidator::probe);
+        if (! cached) {
+            if (! probe(e)) {
+                if (probes != null)
+                    probes.remove(e);
+                return;
+            }
+            if (probes != null)
+                probes.store(e);
+        }
+
+        e.setEnabled(true);
+        
+        LOG.info("Datastore {} ({}) version {} instance {}, {}, {} transport{}", 
+                e.getName(), e.getEngineType(), e.getEngineVersion(), 
+                e.getEngine().getInstanceName(), 
+                (e.getMode()==EngineMode.Target) ? "target only" :
+                        (e.isDdlAware() ? "DDL-aware" : "not DDL-aware"),
+                transport.getName(), cached ? ", cached" : "");
+    }
+
+    /**
+     * Run dmshowversion and dmshowevents for the engine,
+     * and grab the engine type and version.
+     * @param e Engine
+     * @return true, if the engine is accessible, false otherwise
+     */
+    static boolean probe(PerEngine e) {
         int code;
         StringBuilder output;
         Map<String,String> subst;
 
-        code = RemoteTool.run("show-version", e.cmdVersion(), (output = new StringBuilder()));
+        code = RemoteTool.run(e, "show-version", e.cmdVersion(), (output = new StringBuilder()));
         if (code != 0) {
             LOG.warn("Failed to run dmshowversion, status code {}. Command output below..."
                     + "\n---- BEGIN OUTPUT ----\n"
                     + "{}"
                     + "\n----- END OUTPUT -----", code, output);
-            return;
+            return false;
         }
         parseVersionOutput(e, output);
 
         subst = new HashMap<>();
         subst.put("INSTANCE", e.getEngine().getInstanceName());
-        code = RemoteTool.run("get-events", e.cmdEvents(), (output = new StringBuilder()));
+        code = RemoteTool.run(e, "get-events", e.cmdEvents(), (output = new StringBuilder()));
         if (code != 0) {
             LOG.warn("Failed to run dmshowevents, status code {}. Command output below..."
                     + "\n---- BEGIN OUTPUT ----\n"
                     + "{}"
                     + "\n----- END OUTPUT -----", code, output);
-            return;
+            return false;
         }
-        
-        e.setEnabled(true);
-        
-        LOG.info("Datastore {} ({}) version {} instance {}, {}", 
-                e.getName(), e.getEngineType(), e.getEngineVersion(), 
-                e.getEngine().getInstanceName(), 
-                (e.getMode()==EngineMode.Target) ? "target only" :
-                        (e.isDdlAware() ? "DDL-aware" : "not DDL-aware"));
+        return true;
     }
 
-    private void parseVersionOutput(PerEngine e, StringBuilder output) {
+    private static void parseVersionOutput(PerEngine e, StringBuilder output) {
         String build = "";
         String version = "";
         String engine = "";
@@ -189,25 +372,28 @@ public class ConfigValidator implements Runnable {
         e.setEngineVersion(version + " " + build);
     }
 
-    private void validate(Monitor m) {
+    private int validate(Monitor m, Script session) {
         m.setEnabled(false);
         // Switch to proper datastores
         if ( m.getTarget() == m.getSource() ) {
-            script.dataStore(m.getSource(), EngineMode.Dual);
+            session.dataStore(m.getSource(), EngineMode.Dual);
         } else {
-            script.dataStore(m.getSource(), EngineMode.Source);
-            script.dataStore(m.getTarget(), EngineMode.Target);
+            session.dataStore(m.getSource(), EngineMode.Source);
+            session.dataStore(m.getTarget(), EngineMode.Target);
         }
         // Check that the subscription exists
-        script.execute("select subscription name \"{0}\";", m.getSubscription().getName());
+        session.execute("select subscription name \"{0}\";", m.getSubscription().getName());
         // Count the table mappings
-        script.execute("list table mappings;");
-        int mappingsCount = script.getTable().getRowCount();
+        session.execute("list table mappings;");
+        final ScriptOutput mappings = session.getTable();
+        int mappingsCount = mappings.getRowCount();
         if (mappingsCount==0) {
             throw new RuntimeException("Missing table mappings in the subscription");
         }
-        LOG.info("\tFound {} table mapping(s)", mappingsCount);
+        // Cache the replicated tables for the dependency analysis
+        m.setSourceTables(PendingChecker.listSourceTables(mappings));
         m.setEnabled(true);
+        return mappingsCount;
     }
 
     private Map<String, EngineMode> listKnownAgents() {
@@ -0,0 +1,127 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import com.ibm.idrcdc.autosub.config.AsGlobals;
+
+/**
+ * Client for the local control endpoint of the worker.
+ * @author zinal
+ */
+public class ControlClient {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(ControlClient.class);
+
+    private static final int CONNECT_TIMEOUT = 2000;
+
+    private final int port;
+    private final File tokenFile;
+    private final int readTimeout;
+
+    public ControlClient(AsGlobals globals) {
+        this.port = globals.getControlPort();
+        this.tokenFile = ControlServer.tokenFile(globals.getDataFile());
+        this.readTimeout = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(CONNECT_TIMEOUT, globals.getCommandTimeout()));
+    }
+
+    /**
+     * @return true, if the control endpoint is configured, false otherwise
+     */
+    public boolean isConfigured() {
+        return port > 0;
+    }
+
+    /**
+     * Send the control request to the worker.
+     * @param method HTTP method, GET or POST
+     * @param path Request path, e.g. "/reload"
+     * @param param Parameter name, or null
+     * @param value Parameter value
+     * @return Worker's reply, or null if the worker is not reachable
+     *   or its access token cannot be read
+     * @throws IOException if the worker has rejected the request
+     */
+    public String send(String method, String path, String param, String value)
+            throws IOException {
+        if (! isConfigured())
+            return null;
+        final String token;
+        try {
+            token = new String(Files.readAllBytes(tokenFile.toPath()),
+                    StandardCharsets.UTF_8).trim();
+        } catch(IOException ix) {
+            LOG.debug("Control token {} is not available", tokenFile, ix);
+            return null;
+        }
+        String spec = "http://" + InetAddress.getLoopbackAddress().getHostAddress()
+                + ":" + port + path;
+        if (param != null)
+            spec = spec + "?" + param + "=" + URLEncoder.encode(value, "UTF-8");
+        final HttpURLConnection conn = (HttpURLConnection) new URL(spec).openConnection();
+        try {
+            conn.setConnectTimeout(CONNECT_TIMEOUT);
+            conn.setReadTimeout(readTimeout);
+            conn.setRequestMethod(method);
+            conn.setRequestProperty(ControlServer.TOKEN_HEADER, token);
+            final int code;
+            try {
+                code = conn.getResponseCode();
+            } catch(IOException ix) {
+                LOG.debug("Control endpoint on port {} is not available", port, ix);
+                return null;
+            }
+            final String text = read((code < 400) ? conn.getInputStream() : conn.getErrorStream());
+            if (code != 200)
+                throw new IOException("Request " + path + " failed with code "
+                        + code + ": " + text);
+            return text;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static String read(InputStream is) throws IOException {
+        if (is == null)
+            return "";
+        try (InputStream input = is) {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final byte[] buf = new byte[4096];
+            int n;
+            while ((n = input.read(buf)) > 0)
+                baos.write(buf, 0, n);
+            return new String(baos.toByteArray(), StandardCharsets.UTF_8).trim();
+        }
+    }
+
+}
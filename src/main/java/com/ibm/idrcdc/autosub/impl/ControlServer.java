@@ -0,0 +1,301 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP control endpoint of the worker, bound to the loopback
+ * interface only. Supported requests:
+ *   GET /status, POST /reload, POST /shutdown,
+ *   POST /check?source=NAME, POST /repair?subscription=NAME,
+ *   GET /outages[?source=NAME][&amp;subscription=NAME].
+ * Replies are plain text.
+ * Each request must carry the access token in the X-AutoSub-Token
+ * header. The token is generated on start, and written to the file
+ * next to the working data file, readable by its owner only.
+ * Requests coming from the web browsers (having the Origin header)
+ * are rejected.
+ * @author zinal
+ */
+public class ControlServer implements AutoCloseable {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(ControlServer.class);
+
+    /**
+     * HTTP header carrying the access token.
+     */
+    public static final String TOKEN_HEADER = "X-AutoSub-Token";
+
+    /**
+     * Control actions, implemented by the worker.
+     * Unknown objects are reported with IllegalArgumentException,
+     * requests which cannot be served now with IllegalStateException.
+     */
+    public static interface Handler {
+
+        /**
+         * @return Status of the datastores and subscriptions
+         */
+        String status();
+
+        /**
+         * Request the configuration reload.
+         */
+        void requestReload();
+
+        /**
+         * Request the shutdown.
+         */
+        void requestShutdown();
+
+        /**
+         * Check the subscriptions of the source datastore now.
+         * @param source Source datastore name
+         * @return Check results
+         */
+        String requestCheck(String source);
+
+        /**
+         * Check the subscription now, and schedule its repair if needed.
+         * @param subscription Subscription name
+         * @return Check results
+         */
+        String requestRepair(String subscription);
+
+        /**
+         * @param source Source datastore name to filter the outages, or null
+         * @param subscription Subscription name to filter the outages, or null
+         * @return Outage statistics and the recent outages
+         */
+        String outages(String source, String subscription);
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final File tokenFile;
+
+    private ControlServer(HttpServer server, ExecutorService executor, File tokenFile) {
+        this.server = server;
+        this.executor = executor;
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     * @param dataFile Working data file
+     * @return Access token file of the control endpoint
+     */
+    public static File tokenFile(String dataFile) {
+        return new File(dataFile + ".token");
+    }
+
+    /**
+     * Start the control endpoint.
+     * @param port Local port
+     * @param tokenFile File to write the access token to
+     * @param handler Control actions
+     * @return Running control endpoint
+     * @throws IOException if the port cannot be bound,
+     *   or the token cannot be written
+     */
+    public static ControlServer start(int port, File tokenFile, Handler handler)
+            throws IOException {
+        final String token = newToken();
+        writeToken(tokenFile, token);
+        final HttpServer server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        final ExecutorService executor = Executors.newFixedThreadPool(2,
+                new DaemonThreadFactory("autosub-control"));
+        server.setExecutor(executor);
+        server.createContext("/status", (ex) -> serve(ex, token, "GET", () -> handler.status()));
+        server.createContext("/reload", (ex) -> serve(ex, token, "POST", () -> {
+            handler.requestReload();
+            return "Reload requested.";
+        }));
+        server.createContext("/shutdown", (ex) -> serve(ex, token, "POST", () -> {
+            handler.requestShutdown();
+            return "Shutdown requested.";
+        }));
+        server.createContext("/check", (ex) -> serve(ex, token, "POST",
+                () -> handler.requestCheck(param(ex, "source"))));
+        server.createContext("/repair", (ex) -> serve(ex, token, "POST",
+                () -> handler.requestRepair(param(ex, "subscription"))));
+        server.createContext("/outages", (ex) -> serve(ex, token, "GET",
+                () -> handler.outages(optParam(ex, "source"), optParam(ex, "subscription"))));
+        server.start();
+        LOG.info("Control endpoint listening on {}", server.getAddress());
+        return new ControlServer(server, executor, tokenFile);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        if (! tokenFile.delete())
+            LOG.debug("Cannot delete the control token file {}", tokenFile);
+    }
+
+    private static String newToken() {
+        final byte[] data = new byte[24];
+        new SecureRandom().nextBytes(data);
+        final StringBuilder sb = new StringBuilder();
+        for (byte b : data) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        return sb.toString();
+    }
+
+    private static void writeToken(File file, String token) throws IOException {
+        final Path path = file.toPath();
+        Files.deleteIfExists(path);
+        try {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rw-------")));
+        } catch(UnsupportedOperationException uoe) {
+            // Not a POSIX file system, restrict the access after creation
+            Files.createFile(path);
+            file.setReadable(false, false);
+            file.setWritable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(true, true);
+        }
+        Files.write(path, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean isAuthorized(HttpExchange ex, String token) {
+        final String value = ex.getRequestHeaders().getFirst(TOKEN_HEADER);
+        if (value == null)
+            return false;
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                value.trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void serve(HttpExchange ex, String token, String method,
+            Action action) throws IOException {
+        int code;
+        String text;
+        try {
+            if (ex.getRequestHeaders().containsKey("Origin")) {
+                // Browsers add it, so this is a page trying to reach us
+                code = 403;
+                text = "Cross-origin requests are not allowed";
+            } else if (! isAuthorized(ex, token)) {
+                code = 403;
+                text = "Missing or invalid access token";
+            } else if (! method.equalsIgnoreCase(ex.getRequestMethod())) {
+                code = 405;
+                text = "Method not allowed, use " + method;
+            } else {
+                text = action.run();
+                code = 200;
+            }
+        } catch(BadRequest br) {
+            code = 400;
+            text = br.getMessage();
+        } catch(IllegalArgumentException iae) {
+            code = 404;
+            text = iae.getMessage();
+        } catch(IllegalStateException ise) {
+            code = 409;
+            text = ise.getMessage();
+        } catch(Exception e) {
+            LOG.warn("Control request {} failed", ex.getRequestURI(), e);
+            code = 500;
+            text = e.toString();
+        }
+        final byte[] body = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(code, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static String param(HttpExchange ex, String name) {
+        final String value = parseQuery(ex.getRequestURI().getRawQuery()).get(name);
+        if (value == null || value.trim().isEmpty())
+            throw new BadRequest("Missing parameter: " + name);
+        return value.trim();
+    }
+
+    private static String optParam(HttpExchange ex, String name) {
+        final String value = parseQuery(ex.getRequestURI().getRawQuery()).get(name);
+        if (value == null || value.trim().isEmpty())
+            return null;
+        return value.trim();
+    }
+
+    static Map<String, String> parseQuery(String query) {
+        final Map<String, String> retval = new HashMap<>();
+        if (query == null)
+            return retval;
+        for (String item : query.split("&")) {
+            final int pos = item.indexOf('=');
+            if (pos <= 0)
+                continue;
+            retval.put(decode(item.substring(0, pos)), decode(item.substring(pos + 1)));
+        }
+        return retval;
+    }
+
+    private static String decode(String v) {
+        try {
+            return URLDecoder.decode(v, "UTF-8");
+        } catch(UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static interface Action {
+        String run() throws Exception;
+    }
+
+    private static final class BadRequest extends RuntimeException {
+        BadRequest(String message) {
+            super(message);
+        }
+    }
+
+}
@@ -0,0 +1,254 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import com.ibm.idrcdc.autosub.config.*;
+import com.ibm.idrcdc.autosub.monitor.PerEngine;
+
+/**
+ * Persistent cache of the engine probe results (engine type, version
+ * and DDL awareness), kept next to the working data file.
+ * Entries are keyed by the engine name and the fingerprint of its
+ * probe commands, so the configuration changes invalidate them.
+ * Cached entries older than the TTL are still used, but are
+ * re-validated in the background.
+ * @author zinal
+ */
+public class EngineProbeCache implements AutoCloseable {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(EngineProbeCache.class);
+
+    private static final String K_KEY = ".key";
+    private static final String K_TYPE = ".type";
+    private static final String K_VERSION = ".version";
+    private static final String K_DDL = ".ddl";
+    private static final String K_TIME = ".time";
+
+    private final File file;
+    private final long ttl;
+    private final Properties data = new Properties();
+    // names of the engines being re-validated
+    private final Set<String> running = new HashSet<>();
+    // names of the engines which failed the re-validation
+    private final Set<String> failed = new HashSet<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            new DaemonThreadFactory("autosub-probe"));
+
+    public EngineProbeCache(AsGlobals globals) {
+        this.file = new File(globals.getDataFile() + ".engines");
+        this.ttl = globals.getProbeTtl();
+        load();
+    }
+
+    /**
+     * @return true, if the cache is enabled, false otherwise
+     */
+    public boolean isEnabled() {
+        return ttl > 0L;
+    }
+
+    /**
+     * Apply the cached probe results to the engine.
+     * Outdated entries are re-validated in the background.
+     * @param e Engine
+     * @param probe Engine probe, used for the re-validation
+     * @return true, if the cached results have been applied,
+     *   false if the engine needs to be probed
+     */
+    public synchronized boolean apply(PerEngine e, Predicate<PerEngine> probe) {
+        if (!isEnabled())
+            return false;
+        final String name = e.getName();
+        if (! fingerprint(e).equals(data.getProperty(name + K_KEY)))
+            return false;
+        final String type = data.getProperty(name + K_TYPE);
+        final String version = data.getProperty(name + K_VERSION);
+        if (type == null || version == null)
+            return false;
+        e.setEngineType(type);
+        e.setEngineVersion(version);
+        e.setDdlAware(Misc.parseBoolean(data.getProperty(name + K_DDL), e.isDdlAware()));
+        long time;
+        try {
+            time = Long.parseLong(data.getProperty(name + K_TIME, "0"));
+        } catch(NumberFormatException nfe) {
+            time = 0L;
+        }
+        if (System.currentTimeMillis() - time >= ttl)
+            revalidate(e, probe);
+        return true;
+    }
+
+    /**
+     * Save the probe results of the engine.
+     * @param e Engine, just probed successfully
+     */
+    public synchronized void store(PerEngine e) {
+        if (!isEnabled())
+            return;
+        final String name = e.getName();
+        data.setProperty(name + K_KEY, fingerprint(e));
+        data.setProperty(name + K_TYPE, nvl(e.getEngineType()));
+        data.setProperty(name + K_VERSION, nvl(e.getEngineVersion()));
+        data.setProperty(name + K_DDL, e.isDdlAware() ? "true" : "false");
+        data.setProperty(name + K_TIME, String.valueOf(System.currentTimeMillis()));
+        save();
+    }
+
+    /**
+     * Forget the probe results of the engine.
+     * @param e Engine, which failed the probe
+     */
+    public synchronized void remove(PerEngine e) {
+        final String name = e.getName();
+        if (data.getProperty(name + K_KEY) == null)
+            return;
+        for (String k : new String[] {K_KEY, K_TYPE, K_VERSION, K_DDL, K_TIME}) {
+            data.remove(name + k);
+        }
+        save();
+    }
+
+    /**
+     * Retrieve and forget the names of the engines which failed
+     * the background re-validation since the previous call.
+     * @return Engine names, possibly empty
+     */
+    public synchronized List<String> takeFailed() {
+        final List<String> retval = new ArrayList<>(failed);
+        failed.clear();
+        return retval;
+    }
+
+    private synchronized void markFailed(PerEngine e) {
+        remove(e);
+        failed.add(e.getName());
+    }
+
+    private void revalidate(PerEngine e, Predicate<PerEngine> probe) {
+        if (! running.add(e.getName()))
+            return;
+        LOG.debug("Scheduling background re-validation for datastore {}", e.getName());
+        executor.submit(() -> {
+            // Probe a scratch copy, so that the working thread never sees
+            // partial results. The live engine is only updated on success.
+            final PerEngine scratch = new PerEngine(e.getEngine());
+            try {
+                if (probe.test(scratch)) {
+                    e.copyProbeResults(scratch);
+                    store(scratch);
+                    LOG.info("Re-validated datastore {} ({}) version {}",
+                            e.getName(), e.getEngineType(), e.getEngineVersion());
+                } else {
+                    markFailed(e);
+                    LOG.warn("Background re-validation failed for datastore {}",
+                            e.getName());
+                }
+            } catch(Exception ex) {
+                markFailed(e);
+                LOG.warn("Background re-validation failed for datastore {}\n\t{}",
+                        e.getName(), Misc.liteMessage(ex));
+            } finally {
+                synchronized(this) {
+                    running.remove(e.getName());
+                }
+            }
+        });
+    }
+
+    /**
+     * Compute the fingerprint of the engine probe configuration.
+     * @param e Engine
+     * @return Fingerprint, as a hex string
+     */
+    static String fingerprint(PerEngine e) {
+        final String text = e.getMode() + "\n" + e.getEngine().getTransport()
+                + "\n" + e.cmdVersion() + "\n" + e.cmdEvents();
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(text.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b & 0xFF));
+            }
+            return sb.toString();
+        } catch(Exception ex) {
+            throw new RuntimeException("Cannot compute the fingerprint", ex);
+        }
+    }
+
+    private static String nvl(String v) {
+        return (v == null) ? "" : v;
+    }
+
+    private void load() {
+        if (!isEnabled() || !file.isFile())
+            return;
+        try (InputStream is = new FileInputStream(file)) {
+            data.load(is);
+            LOG.debug("Loaded the engine probe cache from {}", file);
+        } catch(Exception ex) {
+            LOG.warn("Cannot read the engine probe cache {}, ignoring it\n\t{}",
+                    file, Misc.liteMessage(ex));
+            data.clear();
+        }
+    }
+
+    private void save() {
+        // Write the temporary file, and then replace the cache with it
+        final File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (OutputStream os = new FileOutputStream(temp)) {
+                data.store(os, "autosub engine probe cache");
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch(Exception ex) {
+            LOG.warn("Cannot write the engine probe cache {}\n\t{}",
+                    file, Misc.liteMessage(ex));
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+}
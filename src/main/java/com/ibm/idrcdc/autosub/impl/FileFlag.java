@@ -24,24 +24,88 @@ package com.ibm.idrcdc.autosub.impl;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
 
 /**
  * File-based flags for autosub application.
+ * Watched flags are tracked through the file system notifications,
+ * the other flags are checked on each access.
  * @author zinal
  */
 public class FileFlag {
 
+    /**
+     * Polling period for the flags which are not watched.
+     */
+    public static final long POLL_PERIOD = 500L;
+
+    /**
+     * Period of the file checks for the watched flags, in case
+     * the notifications are lost (e.g. over NFS) or delayed
+     * (e.g. by the polling-based watch service implementations).
+     */
+    public static final long RECHECK_PERIOD = 10L * POLL_PERIOD;
+
     private final File file;
+    private volatile boolean watched = false;
+    private volatile boolean state = false;
+    // time of the last file check for the watched flag
+    private volatile long refreshed = 0L;
 
     public FileFlag(File file) {
-        this.file = file;
+        this.file = file.getAbsoluteFile();
     }
 
     public FileFlag(String file) {
-        this.file = new File(file);
+        this(new File(file));
+    }
+
+    /**
+     * Track the flag through the file system notifications,
+     * avoiding the file checks on each access.
+     * Falls back to the file checks if the notifications
+     * are not available.
+     * @return this
+     */
+    public FileFlag watch() {
+        if (!watched && FlagWatcher.getInstance().register(this)) {
+            watched = true;
+            // The flag might have been changed before the registration
+            refresh();
+        }
+        return this;
+    }
+
+    public boolean isWatched() {
+        return watched;
+    }
+
+    Path getPath() {
+        return file.toPath();
+    }
+
+    /**
+     * Re-read the flag state, on the file system notification.
+     */
+    void refresh() {
+        state = file.isFile();
+        refreshed = System.currentTimeMillis();
+    }
+
+    /**
+     * Switch the flag to the file checks, when the watch is lost.
+     */
+    void unwatch() {
+        watched = false;
     }
 
     public boolean isEnabled() {
+        if (watched) {
+            if (System.currentTimeMillis() - refreshed >= RECHECK_PERIOD)
+                refresh();
+            return state;
+        }
         return file.isFile();
     }
 
@@ -52,6 +116,8 @@ public class FileFlag {
         } catch(IOException ix) {
             throw new RuntimeException("Cannot create file " + file, ix);
         }
+        if (watched)
+            refresh();
     }
 
     public void disable() {
@@ -62,6 +128,42 @@ public class FileFlag {
                 throw new RuntimeException("Cannot remove file " + file, ix);
             }
         }
+        if (watched)
+            refresh();
+    }
+
+    /**
+     * Wait until any of the flags is enabled, or until the deadline.
+     * Returns immediately on the change of the watched flags.
+     * @param deadline Time to stop waiting
+     * @param flags Flags to wait for
+     * @return true, if any flag is enabled, false on the deadline
+     */
+    public static boolean awaitAny(long deadline, FileFlag... flags) {
+        return awaitAny(deadline, () -> false, flags);
+    }
+
+    /**
+     * Wait until any of the flags is enabled, the condition is met,
+     * or until the deadline.
+     * The condition is re-checked on {@link #wakeUp()}.
+     * @param deadline Time to stop waiting
+     * @param condition Additional wake-up condition
+     * @param flags Flags to wait for
+     * @return true, if any flag is enabled or the condition is met,
+     *         false on the deadline
+     */
+    public static boolean awaitAny(long deadline, BooleanSupplier condition,
+            FileFlag... flags) {
+        return FlagWatcher.getInstance().await(deadline, POLL_PERIOD, condition, flags);
+    }
+
+    /**
+     * Wake up the threads waiting in {@link #awaitAny(long, FileFlag...)}
+     * to re-check the flags and conditions.
+     */
+    public static void wakeUp() {
+        FlagWatcher.getInstance().signal();
     }
 
     public static FileFlag newShutdown(String base) {
@@ -0,0 +1,208 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Watches the directories containing the file flags, and wakes up
+ * the threads waiting for the flag changes.
+ * Flags which cannot be watched are polled by the waiting threads,
+ * the watched ones are still re-checked now and then.
+ * @author zinal
+ */
+final class FlagWatcher {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(FlagWatcher.class);
+
+    private static final FlagWatcher INSTANCE = new FlagWatcher();
+
+    // guarded by this
+    private WatchService service = null;
+    private boolean unsupported = false;
+    // watched directory -> flags within it
+    private final Map<Path, List<FileFlag>> flags = new HashMap<>();
+    // incremented on each flag change, to avoid the lost wake-ups
+    private long version = 0L;
+
+    private FlagWatcher() {
+    }
+
+    static FlagWatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start watching the directory of the flag.
+     * @param flag File flag
+     * @return true, if the flag is watched, false if it has to be polled
+     */
+    synchronized boolean register(FileFlag flag) {
+        final Path dir = flag.getPath().getParent();
+        List<FileFlag> list = flags.get(dir);
+        if (list == null) {
+            if (! startService())
+                return false;
+            try {
+                dir.register(service,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch(IOException | RuntimeException ex) {
+                LOG.warn("Cannot watch directory {}, polling the flags instead\n\t{}",
+                        dir, ex.toString());
+                return false;
+            }
+            LOG.debug("Watching the flags in directory {}", dir);
+            list = new ArrayList<>();
+            flags.put(dir, list);
+        }
+        list.add(flag);
+        return true;
+    }
+
+    private boolean startService() {
+        if (service != null)
+            return true;
+        if (unsupported)
+            return false;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch(IOException | RuntimeException ex) {
+            unsupported = true;
+            LOG.warn("File system watching is not available, polling the flags instead\n\t{}",
+                    ex.toString());
+            return false;
+        }
+        final WatchService ws = service;
+        new DaemonThreadFactory("autosub-flags").newThread(() -> run(ws)).start();
+        return true;
+    }
+
+    private void run(WatchService ws) {
+        while (true) {
+            final WatchKey key;
+            try {
+                key = ws.take();
+            } catch(InterruptedException | ClosedWatchServiceException ex) {
+                return;
+            }
+            final Path dir = (Path) key.watchable();
+            final List<FileFlag> changed = new ArrayList<>();
+            boolean lost = false;
+            synchronized(this) {
+                final List<FileFlag> list = flags.get(dir);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (list == null)
+                        continue;
+                    for (FileFlag flag : list) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || flag.getPath().getFileName().equals(event.context()))
+                            changed.add(flag);
+                    }
+                }
+                if (! key.reset()) {
+                    // The directory is no longer accessible
+                    LOG.warn("Lost the watch on directory {}, polling the flags instead", dir);
+                    if (list != null) {
+                        for (FileFlag flag : list)
+                            flag.unwatch();
+                    }
+                    flags.remove(dir);
+                    lost = true;
+                }
+            }
+            for (FileFlag flag : changed)
+                flag.refresh();
+            // Changes of the other files in the directory are ignored
+            if (lost || !changed.isEmpty())
+                signal();
+        }
+    }
+
+    /**
+     * Wake up the threads waiting for the flag changes.
+     * Also used to wake up the waiting threads on the other events.
+     */
+    synchronized void signal() {
+        ++version;
+        notifyAll();
+    }
+
+    /**
+     * Wait until any of the flags is enabled, the condition is met,
+     * or the deadline.
+     * Polls the flags which cannot be watched.
+     * The condition is re-checked after each {@link #signal()}.
+     * @param deadline Time to stop waiting
+     * @param pollPeriod Polling period for the flags not watched
+     * @param condition Additional wake-up condition
+     * @param waitFlags Flags to wait for
+     * @return true, if any flag is enabled or the condition is met,
+     *         false on the deadline
+     */
+    boolean await(long deadline, long pollPeriod, BooleanSupplier condition,
+            FileFlag... waitFlags) {
+        while (true) {
+            final long startVersion;
+            synchronized(this) {
+                startVersion = version;
+            }
+            if (condition.getAsBoolean())
+                return true;
+            boolean polled = false;
+            for (FileFlag flag : waitFlags) {
+                if (flag.isEnabled())
+                    return true;
+                if (! flag.isWatched())
+                    polled = true;
+            }
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0L)
+                return false;
+            synchronized(this) {
+                if (version == startVersion) {
+                    try {
+                        // Watched flags are re-checked too, in case
+                        // the notifications do not arrive
+                        wait(Math.min(remaining, polled ? pollPeriod
+                                : FileFlag.RECHECK_PERIOD));
+                    } catch(InterruptedException ix) {}
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with the fixed millisecond buckets.
+ * Recording is lock-free and does not allocate.
+ * @author zinal
+ */
+public class Histogram {
+
+    /**
+     * Upper bounds of the buckets, in milliseconds.
+     * The last bucket (above the last bound) is unbounded.
+     */
+    private static final long[] BOUNDS = {
+        1L, 2L, 5L, 10L, 25L, 50L, 100L, 250L, 500L,
+        1000L, 2500L, 5000L, 10000L, 30000L, 60000L,
+        120000L, 300000L, 600000L, 1800000L
+    };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @return Upper bounds of the buckets in milliseconds,
+     *   not including the unbounded one
+     */
+    public static long[] getBounds() {
+        return BOUNDS.clone();
+    }
+
+    /**
+     * Register the duration.
+     * @param millis Duration in milliseconds
+     */
+    public void record(long millis) {
+        if (millis < 0L)
+            millis = 0L;
+        buckets.incrementAndGet(bucketOf(millis));
+        total.addAndGet(millis);
+        count.incrementAndGet();
+        long cur = max.get();
+        while (millis > cur && !max.compareAndSet(cur, millis))
+            cur = max.get();
+    }
+
+    /**
+     * Register the duration since the specified moment.
+     * @param startNanos Start moment, as returned by {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000000L);
+    }
+
+    private static int bucketOf(long millis) {
+        for (int i = 0; i < BOUNDS.length; ++i) {
+            if (millis <= BOUNDS[i])
+                return i;
+        }
+        return BOUNDS.length;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return Sum of the durations registered, in milliseconds
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * @return Maximum duration registered, in milliseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return Number of registrations per bucket, non-cumulative,
+     *   the last value being the unbounded bucket
+     */
+    public long[] getBuckets() {
+        final long[] retval = new long[buckets.length()];
+        for (int i = 0; i < retval.length; ++i)
+            retval[i] = buckets.get(i);
+        return retval;
+    }
+
+    /**
+     * Estimate the percentile as the upper bound of the bucket
+     * containing it, limited by the maximum registered.
+     * @param fraction Percentile fraction, e.g. 0.95
+     * @return Estimated value in milliseconds, 0 if nothing was registered
+     */
+    public long getPercentile(double fraction) {
+        final long[] data = getBuckets();
+        long n = 0L;
+        for (long v : data)
+            n += v;
+        if (n == 0L)
+            return 0L;
+        final long rank = Math.max(1L, (long) Math.ceil(fraction * n));
+        final long top = getMax();
+        long seen = 0L;
+        for (int i = 0; i < BOUNDS.length; ++i) {
+            seen += data[i];
+            if (seen >= rank)
+                return Math.min(BOUNDS[i], top);
+        }
+        return top;
+    }
+
+    @Override
+    public String toString() {
+        return "count " + getCount() + ", total " + getTotal()
+                + " msec, max " + getMax() + " msec";
+    }
+
+}
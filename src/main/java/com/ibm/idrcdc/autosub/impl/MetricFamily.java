@@ -0,0 +1,116 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Group of metrics of the same kind, distinguished by the label value.
+ * Unlabeled families have a single metric with the empty label value.
+ * @param <M> Metric type: {@link Histogram} for timers,
+ *   {@link java.util.concurrent.atomic.LongAdder} for counters,
+ *   {@link java.util.concurrent.atomic.AtomicLong} for gauges
+ * @author zinal
+ */
+public class MetricFamily<M> {
+
+    /**
+     * Kinds of metrics.
+     */
+    public static enum Type {
+        Timer,
+        Counter,
+        Gauge
+    }
+
+    private final String name;
+    private final Type type;
+    private final String labelName;
+    private final String help;
+    private final Supplier<M> factory;
+    // label value -> metric, sorted for the stable output
+    private final ConcurrentSkipListMap<String, M> metrics = new ConcurrentSkipListMap<>();
+
+    MetricFamily(String name, Type type, String labelName, String help,
+            Supplier<M> factory) {
+        this.name = name;
+        this.type = type;
+        this.labelName = labelName;
+        this.help = help;
+        this.factory = factory;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return Label name, or null for the unlabeled family
+     */
+    public String getLabelName() {
+        return labelName;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    /**
+     * Grab the metric for the label value, creating it on the first use.
+     * @param label Label value, ignored for the unlabeled family
+     * @return Metric
+     */
+    public M get(String label) {
+        final String key = (labelName == null || label == null) ? "" : label;
+        final M m = metrics.get(key);
+        if (m != null)
+            return m;
+        return metrics.computeIfAbsent(key, k -> factory.get());
+    }
+
+    /**
+     * @return Metric of the unlabeled family
+     */
+    public M get() {
+        return get("");
+    }
+
+    /**
+     * @return Label value -> metric, sorted by the label value
+     */
+    public Map<String, M> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Read-only JMX view of the metric family.
+ * Attributes are named "label.stat" for the timers
+ * (stats being count, totalMillis, maxMillis, p50Millis, p95Millis
+ * and p99Millis), and "label" for the counters and gauges.
+ * Unlabeled families use the stat names alone, or "value".
+ * @author zinal
+ */
+public class MetricFamilyBean implements DynamicMBean {
+
+    private static final String[] TIMER_STATS = {
+        "count", "totalMillis", "maxMillis", "p50Millis", "p95Millis", "p99Millis"
+    };
+
+    private final MetricFamily<?> family;
+
+    public MetricFamilyBean(MetricFamily<?> family) {
+        this.family = family;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        if (family.getType() != MetricFamily.Type.Timer) {
+            final Object m = family.getMetrics().get(
+                    "value".equals(attribute) ? "" : attribute);
+            if (m == null)
+                throw new AttributeNotFoundException(attribute);
+            return value(m);
+        }
+        final int pos = attribute.lastIndexOf('.');
+        final String label = (pos < 0) ? "" : attribute.substring(0, pos);
+        final String stat = attribute.substring(pos + 1);
+        final Histogram h = (Histogram) family.getMetrics().get(label);
+        if (h == null)
+            throw new AttributeNotFoundException(attribute);
+        switch (stat) {
+            case "count": return h.getCount();
+            case "totalMillis": return h.getTotal();
+            case "maxMillis": return h.getMax();
+            case "p50Millis": return h.getPercentile(0.50);
+            case "p95Millis": return h.getPercentile(0.95);
+            case "p99Millis": return h.getPercentile(0.99);
+            default:
+                throw new AttributeNotFoundException(attribute);
+        }
+    }
+
+    private static long value(Object m) {
+        if (m instanceof LongAdder)
+            return ((LongAdder) m).sum();
+        return ((AtomicLong) m).get();
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metric attributes are read-only: "
+                + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        final AttributeList retval = new AttributeList();
+        for (String name : attributes) {
+            try {
+                retval.add(new Attribute(name, getAttribute(name)));
+            } catch(AttributeNotFoundException anfe) {
+                // skipped, as required by the DynamicMBean contract
+            }
+        }
+        return retval;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        // Nothing can be set
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature)
+            throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    /**
+     * Attributes are re-listed on each call, as the label values
+     * appear while the application runs.
+     * @return MBean description
+     */
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final List<MBeanAttributeInfo> attrs = new ArrayList<>();
+        for (Map.Entry<String, ?> me : family.getMetrics().entrySet()) {
+            final String label = me.getKey();
+            if (family.getType() == MetricFamily.Type.Timer) {
+                for (String stat : TIMER_STATS) {
+                    attrs.add(attribute(label.isEmpty() ? stat : label + "." + stat));
+                }
+            } else {
+                attrs.add(attribute(label.isEmpty() ? "value" : label));
+            }
+        }
+        return new MBeanInfo(getClass().getName(), family.getHelp(),
+                attrs.toArray(new MBeanAttributeInfo[attrs.size()]),
+                null, new MBeanOperationInfo[0], null);
+    }
+
+    private MBeanAttributeInfo attribute(String name) {
+        return new MBeanAttributeInfo(name, "long", family.getHelp(),
+                true, false, false);
+    }
+
+}
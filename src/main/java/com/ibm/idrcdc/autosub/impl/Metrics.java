@@ -0,0 +1,154 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registry of the application metrics.
+ * Families are normally kept in the static fields of the classes
+ * feeding them, so that the hot paths only do the label lookup.
+ * Each family is exposed as a JMX MBean once {@link #enableJmx()}
+ * has been called.
+ * @author zinal
+ */
+public final class Metrics {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(Metrics.class);
+
+    /**
+     * JMX domain of the metric MBeans.
+     */
+    public static final String DOMAIN = "com.ibm.idrcdc.autosub";
+
+    // family name -> family, sorted for the stable output
+    private static final Map<String, MetricFamily<?>> FAMILIES =
+            new ConcurrentSkipListMap<>();
+
+    private static boolean jmxEnabled = false;
+
+    private Metrics() {
+    }
+
+    /**
+     * Define the family of latency histograms.
+     * @param name Family name
+     * @param labelName Label name, or null for the single histogram
+     * @param help Family description
+     * @return Family of histograms
+     */
+    public static MetricFamily<Histogram> timers(String name, String labelName, String help) {
+        return define(name, MetricFamily.Type.Timer, labelName, help, Histogram::new);
+    }
+
+    /**
+     * Define the family of counters.
+     * @param name Family name
+     * @param labelName Label name, or null for the single counter
+     * @param help Family description
+     * @return Family of counters
+     */
+    public static MetricFamily<LongAdder> counters(String name, String labelName, String help) {
+        return define(name, MetricFamily.Type.Counter, labelName, help, LongAdder::new);
+    }
+
+    /**
+     * Define the family of gauges.
+     * @param name Family name
+     * @param labelName Label name, or null for the single gauge
+     * @param help Family description
+     * @return Family of gauges
+     */
+    public static MetricFamily<AtomicLong> gauges(String name, String labelName, String help) {
+        return define(name, MetricFamily.Type.Gauge, labelName, help, AtomicLong::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static synchronized <M> MetricFamily<M> define(String name,
+            MetricFamily.Type type, String labelName, String help, Supplier<M> factory) {
+        MetricFamily<?> f = FAMILIES.get(name);
+        if (f != null) {
+            if (f.getType() != type)
+                throw new IllegalArgumentException("Metric family " + name
+                        + " is already defined as " + f.getType());
+            return (MetricFamily<M>) f;
+        }
+        final MetricFamily<M> retval = new MetricFamily<>(name, type, labelName, help, factory);
+        FAMILIES.put(name, retval);
+        if (jmxEnabled)
+            register(retval);
+        return retval;
+    }
+
+    /**
+     * @return All the metric families, sorted by name
+     */
+    public static Collection<MetricFamily<?>> getFamilies() {
+        return Collections.unmodifiableCollection(new ArrayList<>(FAMILIES.values()));
+    }
+
+    /**
+     * Register the MBeans for the existing and future metric families
+     * in the platform MBean server.
+     */
+    public static synchronized void enableJmx() {
+        if (jmxEnabled)
+            return;
+        jmxEnabled = true;
+        for (MetricFamily<?> f : FAMILIES.values())
+            register(f);
+    }
+
+    private static void register(MetricFamily<?> f) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName on = objectName(f);
+            if (! server.isRegistered(on))
+                server.registerMBean(new MetricFamilyBean(f), on);
+        } catch(Exception ex) {
+            LOG.warn("Cannot register the MBean for metric family {}\n\t{}",
+                    f.getName(), ex.toString());
+        }
+    }
+
+    /**
+     * @param f Metric family
+     * @return JMX object name of the family MBean
+     * @throws javax.management.MalformedObjectNameException on invalid name
+     */
+    public static ObjectName objectName(MetricFamily<?> f)
+            throws javax.management.MalformedObjectNameException {
+        return new ObjectName(DOMAIN + ":type=Metrics,name=" + f.getName());
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP endpoint serving the metrics in the Prometheus text format
+ * on GET /metrics. The metrics are rendered in the endpoint's own
+ * thread, reading the atomic values and the published snapshots only.
+ * @author zinal
+ */
+public class MetricsServer implements AutoCloseable {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(MetricsServer.class);
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private MetricsServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Start the metrics endpoint on all the network interfaces.
+     * @param port Listening port
+     * @param collector Source of the metrics not kept in the registry, or null
+     * @return Running metrics endpoint
+     * @throws IOException if the port cannot be bound
+     */
+    public static MetricsServer start(int port, PrometheusWriter.Collector collector)
+            throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        final ExecutorService executor = Executors.newSingleThreadExecutor(
+                new DaemonThreadFactory("autosub-metrics"));
+        server.setExecutor(executor);
+        server.createContext("/metrics", (ex) -> serve(ex, collector));
+        server.start();
+        LOG.info("Metrics endpoint listening on {}", server.getAddress());
+        return new MetricsServer(server, executor);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static void serve(HttpExchange ex, PrometheusWriter.Collector collector)
+            throws IOException {
+        try {
+            if (! "GET".equalsIgnoreCase(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            final byte[] body;
+            try {
+                body = PrometheusWriter.render(Metrics.getFamilies(), collector)
+                        .getBytes(StandardCharsets.UTF_8);
+            } catch(Exception e) {
+                LOG.warn("Failed to render the metrics", e);
+                ex.sendResponseHeaders(500, -1);
+                return;
+            }
+            ex.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(body);
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+}
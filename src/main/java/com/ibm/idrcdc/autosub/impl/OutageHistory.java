@@ -0,0 +1,339 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Ring buffer of the completed subscription outages.
+ * Outages are kept in the primitive arrays, with the datastore,
+ * subscription and failure class names stored once in the symbol table.
+ * Not thread safe, the callers synchronize the access.
+ * @author zinal
+ */
+public class OutageHistory {
+
+    /**
+     * Outage completed after a successful repair.
+     */
+    public static final byte OUTCOME_REPAIRED = 1;
+
+    /**
+     * Outage completed without a successful repair (fixed by other means).
+     */
+    public static final byte OUTCOME_RECOVERED = 2;
+
+    private final int capacity;
+    private final int[] source;
+    private final int[] target;
+    private final int[] subscription;
+    private final int[] failureClass;
+    private final byte[] outcome;
+    private final int[] attempts;
+    private final long[] detected;
+    private final long[] repairStart;
+    private final long[] repairEnd;
+    private final long[] recovered;
+    // position of the next record
+    private int next = 0;
+    private int size = 0;
+
+    private final List<String> symbols = new ArrayList<>();
+    private final Map<String, Integer> symbolIds = new HashMap<>();
+
+    public OutageHistory(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.source = new int[this.capacity];
+        this.target = new int[this.capacity];
+        this.subscription = new int[this.capacity];
+        this.failureClass = new int[this.capacity];
+        this.outcome = new byte[this.capacity];
+        this.attempts = new int[this.capacity];
+        this.detected = new long[this.capacity];
+        this.repairStart = new long[this.capacity];
+        this.repairEnd = new long[this.capacity];
+        this.recovered = new long[this.capacity];
+    }
+
+    /**
+     * Copy the history, so that the copy can be analyzed
+     * while the original one keeps changing.
+     * @param other History to be copied
+     */
+    public OutageHistory(OutageHistory other) {
+        this.capacity = other.capacity;
+        this.source = other.source.clone();
+        this.target = other.target.clone();
+        this.subscription = other.subscription.clone();
+        this.failureClass = other.failureClass.clone();
+        this.outcome = other.outcome.clone();
+        this.attempts = other.attempts.clone();
+        this.detected = other.detected.clone();
+        this.repairStart = other.repairStart.clone();
+        this.repairEnd = other.repairEnd.clone();
+        this.recovered = other.recovered.clone();
+        this.next = other.next;
+        this.size = other.size;
+        this.symbols.addAll(other.symbols);
+        this.symbolIds.putAll(other.symbolIds);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add the completed outage, replacing the oldest one when full.
+     * @param o Outage
+     */
+    public void add(Outage o) {
+        final int pos = next;
+        source[pos] = symbol(o.source);
+        target[pos] = symbol(o.target);
+        subscription[pos] = symbol(o.subscription);
+        failureClass[pos] = symbol(o.failureClass);
+        outcome[pos] = o.outcome;
+        attempts[pos] = o.attempts;
+        detected[pos] = o.detected;
+        repairStart[pos] = o.repairStart;
+        repairEnd[pos] = o.repairEnd;
+        recovered[pos] = o.recovered;
+        next = (next + 1) % capacity;
+        if (size < capacity)
+            ++size;
+        else if (symbols.size() > 4 * capacity)
+            compactSymbols();
+    }
+
+    private int symbol(String v) {
+        if (v == null)
+            v = "";
+        final Integer id = symbolIds.get(v);
+        if (id != null)
+            return id;
+        symbols.add(v);
+        symbolIds.put(v, symbols.size() - 1);
+        return symbols.size() - 1;
+    }
+
+    /**
+     * Drop the names no longer referenced, after many objects
+     * have come and gone.
+     */
+    private void compactSymbols() {
+        final List<Outage> temp = list();
+        symbols.clear();
+        symbolIds.clear();
+        next = 0;
+        size = 0;
+        for (Outage o : temp)
+            add(o);
+    }
+
+    /**
+     * @param index Record number, 0 being the oldest
+     * @return Outage data
+     */
+    public Outage get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        final int pos = (next - size + index + capacity) % capacity;
+        final Outage o = new Outage();
+        o.source = symbols.get(source[pos]);
+        o.target = symbols.get(target[pos]);
+        o.subscription = symbols.get(subscription[pos]);
+        o.failureClass = symbols.get(failureClass[pos]);
+        o.outcome = outcome[pos];
+        o.attempts = attempts[pos];
+        o.detected = detected[pos];
+        o.repairStart = repairStart[pos];
+        o.repairEnd = repairEnd[pos];
+        o.recovered = recovered[pos];
+        return o;
+    }
+
+    /**
+     * @return All outages, oldest first
+     */
+    public List<Outage> list() {
+        final List<Outage> retval = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i)
+            retval.add(get(i));
+        return retval;
+    }
+
+    /**
+     * Compute the time to recover statistics (detection to recovery).
+     * @param bySource true to group by source datastore,
+     *        false to group by failure class
+     * @return Group name -> statistics, sorted by name
+     */
+    public Map<String, Stats> timeToRecover(boolean bySource) {
+        final Map<String, long[]> data = new HashMap<>();
+        final Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < size; ++i) {
+            final int pos = (next - size + i + capacity) % capacity;
+            collect(data, counts, symbols.get(bySource ? source[pos] : failureClass[pos]),
+                    recovered[pos] - detected[pos]);
+        }
+        return stats(data, counts);
+    }
+
+    /**
+     * Compute the repair duration statistics, for the outages
+     * with a repair attempt.
+     * @param bySource true to group by source datastore,
+     *        false to group by failure class
+     * @return Group name -> statistics, sorted by name
+     */
+    public Map<String, Stats> repairTime(boolean bySource) {
+        final Map<String, long[]> data = new HashMap<>();
+        final Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < size; ++i) {
+            final int pos = (next - size + i + capacity) % capacity;
+            if (repairStart[pos] == 0L || repairEnd[pos] < repairStart[pos])
+                continue;
+            collect(data, counts, symbols.get(bySource ? source[pos] : failureClass[pos]),
+                    repairEnd[pos] - repairStart[pos]);
+        }
+        return stats(data, counts);
+    }
+
+    private void collect(Map<String, long[]> data, Map<String, Integer> counts,
+            String key, long value) {
+        long[] values = data.get(key);
+        final int n = counts.getOrDefault(key, 0);
+        if (values == null) {
+            values = new long[Math.min(16, size)];
+            data.put(key, values);
+        } else if (values.length == n) {
+            values = Arrays.copyOf(values, Math.min(size, n * 2));
+            data.put(key, values);
+        }
+        values[n] = Math.max(0L, value);
+        counts.put(key, n + 1);
+    }
+
+    private static Map<String, Stats> stats(Map<String, long[]> data,
+            Map<String, Integer> counts) {
+        final Map<String, Stats> retval = new TreeMap<>();
+        for (Map.Entry<String, long[]> me : data.entrySet()) {
+            final long[] values = Arrays.copyOf(me.getValue(), counts.get(me.getKey()));
+            Arrays.sort(values);
+            retval.put(me.getKey(), new Stats(values));
+        }
+        return retval;
+    }
+
+    /**
+     * Single outage record.
+     */
+    public static final class Outage {
+        public String source;
+        public String target;
+        public String subscription;
+        public String failureClass;
+        public byte outcome;
+        public int attempts;
+        public long detected;
+        public long repairStart;
+        public long repairEnd;
+        public long recovered;
+
+        /**
+         * @return Time from detection to recovery, in milliseconds
+         */
+        public long getDuration() {
+            return Math.max(0L, recovered - detected);
+        }
+
+        public String getOutcomeName() {
+            return (outcome == OUTCOME_REPAIRED) ? "repaired" : "recovered";
+        }
+
+        /**
+         * @return Copy of this record
+         */
+        public Outage copy() {
+            final Outage o = new Outage();
+            o.source = source;
+            o.target = target;
+            o.subscription = subscription;
+            o.failureClass = failureClass;
+            o.outcome = outcome;
+            o.attempts = attempts;
+            o.detected = detected;
+            o.repairStart = repairStart;
+            o.repairEnd = repairEnd;
+            o.recovered = recovered;
+            return o;
+        }
+    }
+
+    /**
+     * Duration statistics, in milliseconds.
+     */
+    public static final class Stats {
+        private final long[] sorted;
+        private long total = 0L;
+
+        Stats(long[] sorted) {
+            this.sorted = sorted;
+            for (long v : sorted)
+                total += v;
+        }
+
+        public int getCount() {
+            return sorted.length;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getMax() {
+            return (sorted.length == 0) ? 0L : sorted[sorted.length - 1];
+        }
+
+        /**
+         * Nearest-rank percentile.
+         * @param fraction Percentile fraction, e.g. 0.9
+         * @return Percentile value
+         */
+        public long getPercentile(double fraction) {
+            if (sorted.length == 0)
+                return 0L;
+            final int rank = (int) Math.ceil(fraction * sorted.length);
+            return sorted[Math.min(sorted.length, Math.max(1, rank)) - 1];
+        }
+    }
+
+}
@@ -0,0 +1,537 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import com.ibm.idrcdc.autosub.config.*;
+import com.ibm.idrcdc.autosub.monitor.Monitor;
+import com.ibm.idrcdc.autosub.monitor.PerSource;
+
+/**
+ * Tracks the subscription outages: detection time, repair start and end,
+ * failure class and outcome. Completed outages are kept in the ring
+ * buffer, and appended to the file next to the working data file,
+ * so that the history survives the restarts. The file is re-written
+ * from the ring buffer when it grows well above the buffer capacity.
+ * The failure class is the altered table event ID (e.g. 9505)
+ * when found, or the subscription state at the detection otherwise.
+ * Tracking is disabled until {@link #configure(AsGlobals)} is called.
+ * @author zinal
+ */
+public class OutageTracker {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(OutageTracker.class);
+
+    private static final OutageTracker INSTANCE = new OutageTracker();
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+    // guarded by this
+    private OutageHistory history = null;
+    private File file = null;
+    // source + subscription name key -> outage in progress
+    private final Map<String, OutageHistory.Outage> open = new HashMap<>();
+    // number of lines in the history file
+    private int fileLines = 0;
+    // incremented on each history change, to detect the outdated statistics
+    private long version = 0L;
+    private Statistics statistics = null;
+
+    // serializes the history file writes, taken before the tracker lock
+    private final Object fileLock = new Object();
+    private volatile boolean suppressWriteErrors = false;
+
+    private OutageTracker() {
+    }
+
+    public static OutageTracker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Enable the tracking, and load the outage history.
+     * @param globals Configuration options
+     */
+    public synchronized void configure(AsGlobals globals) {
+        open.clear();
+        fileLines = 0;
+        ++version;
+        statistics = null;
+        if (globals.getOutageHistory() <= 0) {
+            history = null;
+            return;
+        }
+        history = new OutageHistory(globals.getOutageHistory());
+        file = new File(globals.getDataFile() + ".outages");
+        load();
+    }
+
+    public synchronized boolean isEnabled() {
+        return history != null;
+    }
+
+    private static String key(Monitor m) {
+        return Misc.nameKey(m.getSource().getName()) + "\u0000"
+                + Misc.nameKey(m.getSubscription().getName());
+    }
+
+    /**
+     * Drop the outages in progress for the subscriptions
+     * no longer monitored, e.g. after the configuration reload.
+     * @param sources Current source groups
+     */
+    public synchronized void retain(List<PerSource> sources) {
+        if (open.isEmpty())
+            return;
+        final Set<String> keys = new HashSet<>();
+        for (PerSource ps : sources) {
+            for (Monitor m : ps.allMonitors())
+                keys.add(key(m));
+        }
+        final Iterator<OutageHistory.Outage> it = open.values().iterator();
+        while (it.hasNext()) {
+            final OutageHistory.Outage o = it.next();
+            if (! keys.contains(Misc.nameKey(o.source) + "\u0000"
+                    + Misc.nameKey(o.subscription))) {
+                LOG.info("Dropped the outage of subscription {}, no longer monitored",
+                        o.subscription);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Register the subscription failure, opening the outage if needed.
+     * @param m Subscription monitor
+     * @param state Subscription state
+     */
+    public synchronized void failed(Monitor m, String state) {
+        if (history == null)
+            return;
+        final String key = key(m);
+        if (open.containsKey(key))
+            return;
+        final OutageHistory.Outage o = new OutageHistory.Outage();
+        o.source = m.getSource().getName();
+        o.target = m.getTarget().getName();
+        o.subscription = m.getSubscription().getName();
+        o.failureClass = state;
+        o.detected = System.currentTimeMillis();
+        open.put(key, o);
+        LOG.debug("Outage of subscription {} detected, state {}", o.subscription, state);
+    }
+
+    /**
+     * Set the failure class of the outage in progress.
+     * @param m Subscription monitor
+     * @param failureClass Failure class, e.g. the event ID
+     */
+    public synchronized void classify(Monitor m, String failureClass) {
+        final OutageHistory.Outage o = (history == null) ? null : open.get(key(m));
+        if (o != null)
+            o.failureClass = failureClass;
+    }
+
+    /**
+     * Register the repair attempt start.
+     * The outage keeps the start of the first attempt.
+     * @param m Subscription monitor
+     */
+    public synchronized void repairStarted(Monitor m) {
+        final OutageHistory.Outage o = (history == null) ? null : open.get(key(m));
+        if (o == null)
+            return;
+        if (o.repairStart == 0L)
+            o.repairStart = System.currentTimeMillis();
+        ++o.attempts;
+    }
+
+    /**
+     * Register the repair attempt end.
+     * The outage keeps the end and the result of the last attempt.
+     * @param m Subscription monitor
+     * @param success true, if the subscription has been repaired
+     */
+    public synchronized void repairEnded(Monitor m, boolean success) {
+        final OutageHistory.Outage o = (history == null) ? null : open.get(key(m));
+        if (o == null)
+            return;
+        o.repairEnd = System.currentTimeMillis();
+        o.outcome = success ? OutageHistory.OUTCOME_REPAIRED
+                : OutageHistory.OUTCOME_RECOVERED;
+    }
+
+    /**
+     * Register the subscription recovery, completing the outage.
+     * @param m Subscription monitor
+     */
+    public void recovered(Monitor m) {
+        final OutageHistory.Outage o;
+        // The file is written outside of the tracker lock, so that
+        // the other threads registering the outages do not wait for it.
+        synchronized(fileLock) {
+            final File target;
+            List<OutageHistory.Outage> all = null;
+            synchronized(this) {
+                o = (history == null) ? null : open.remove(key(m));
+                if (o == null)
+                    return;
+                o.recovered = System.currentTimeMillis();
+                if (o.outcome != OutageHistory.OUTCOME_REPAIRED)
+                    o.outcome = OutageHistory.OUTCOME_RECOVERED;
+                history.add(o);
+                ++version;
+                target = file;
+                if (++fileLines > 2 * history.getCapacity()) {
+                    all = history.list();
+                    fileLines = all.size();
+                }
+            }
+            if (all != null)
+                rewrite(target, all);
+            else
+                append(target, o);
+        }
+        LOG.info("Outage of subscription {} completed in {}, class {}, {}",
+                o.subscription, formatDuration(o.getDuration()),
+                o.failureClass, o.getOutcomeName());
+    }
+
+    /**
+     * Load the history file, keeping the newest outages which fit
+     * the ring buffer. The file is re-written when it grows
+     * well above the ring buffer capacity.
+     */
+    private void load() {
+        if (! file.isFile())
+            return;
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(),
+                StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final OutageHistory.Outage o = parse(line);
+                if (o != null) {
+                    history.add(o);
+                    ++lines;
+                }
+            }
+        } catch(IOException | RuntimeException ex) {
+            LOG.warn("Failed to read the outage history from {}\n\t{}",
+                    file, ex.toString());
+            return;
+        }
+        LOG.debug("Loaded {} outage(s) from {}", lines, file);
+        fileLines = lines;
+        if (lines > 2 * history.getCapacity()) {
+            final List<OutageHistory.Outage> all = history.list();
+            rewrite(file, all);
+            fileLines = all.size();
+        }
+    }
+
+    private void rewrite(File target, List<OutageHistory.Outage> all) {
+        final File temp = new File(target.getPath() + ".tmp");
+        try {
+            try (Writer w = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                for (OutageHistory.Outage o : all)
+                    w.write(format(o));
+            }
+            Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.debug("Compacted the outage history file {} to {} line(s)",
+                    target, all.size());
+        } catch(IOException ix) {
+            LOG.warn("Failed to compact the outage history file {}\n\t{}",
+                    target, ix.toString());
+        }
+    }
+
+    private void append(File target, OutageHistory.Outage o) {
+        try {
+            Files.write(target.toPath(), format(o).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            suppressWriteErrors = false;
+        } catch(IOException ix) {
+            if (! suppressWriteErrors) {
+                suppressWriteErrors = true;
+                LOG.warn("Failed to write the outage history file {}\n\t{}",
+                        target, ix.toString());
+            }
+        }
+    }
+
+    /**
+     * Format the outage as the tab-separated history file line:
+     * source, target, subscription, class, outcome, attempts,
+     * detected, repair start, repair end, recovered (epoch msec).
+     */
+    static String format(OutageHistory.Outage o) {
+        return o.source + "\t" + o.target + "\t" + o.subscription
+                + "\t" + o.failureClass + "\t" + o.getOutcomeName()
+                + "\t" + o.attempts + "\t" + o.detected
+                + "\t" + o.repairStart + "\t" + o.repairEnd
+                + "\t" + o.recovered + "\n";
+    }
+
+    static OutageHistory.Outage parse(String line) {
+        final String[] items = line.split("\t");
+        if (items.length < 10)
+            return null;
+        final OutageHistory.Outage o = new OutageHistory.Outage();
+        o.source = items[0];
+        o.target = items[1];
+        o.subscription = items[2];
+        o.failureClass = items[3];
+        o.outcome = "repaired".equals(items[4]) ? OutageHistory.OUTCOME_REPAIRED
+                : OutageHistory.OUTCOME_RECOVERED;
+        try {
+            o.attempts = Integer.parseInt(items[5]);
+            o.detected = Long.parseLong(items[6]);
+            o.repairStart = Long.parseLong(items[7]);
+            o.repairEnd = Long.parseLong(items[8]);
+            o.recovered = Long.parseLong(items[9]);
+        } catch(NumberFormatException nfe) {
+            return null; // damaged line, e.g. partially written
+        }
+        return o;
+    }
+
+    /**
+     * Statistics computed for the particular version of the history.
+     * Immutable, shared by the reports until the history changes.
+     */
+    private static final class Statistics {
+        final long version;
+        final int completed;
+        final Map<String, OutageHistory.Stats> mttrSource;
+        final Map<String, OutageHistory.Stats> mttrClass;
+        final Map<String, OutageHistory.Stats> repairSource;
+        final Map<String, OutageHistory.Stats> repairClass;
+
+        Statistics(long version, OutageHistory history) {
+            this.version = version;
+            this.completed = history.size();
+            this.mttrSource = history.timeToRecover(true);
+            this.mttrClass = history.timeToRecover(false);
+            this.repairSource = history.repairTime(true);
+            this.repairClass = history.repairTime(false);
+        }
+    }
+
+    /**
+     * Get the statistics for the current history. The history is only
+     * copied when it has changed since the statistics were computed,
+     * and the computation runs outside of the lock.
+     * @return Statistics, or null if the tracking is disabled
+     */
+    private Statistics statistics() {
+        final OutageHistory copy;
+        final long current;
+        synchronized(this) {
+            if (history == null)
+                return null;
+            if (statistics != null && statistics.version == version)
+                return statistics;
+            copy = new OutageHistory(history);
+            current = version;
+        }
+        final Statistics retval = new Statistics(current, copy);
+        synchronized(this) {
+            if (statistics == null || statistics.version < current)
+                statistics = retval;
+        }
+        return retval;
+    }
+
+    /**
+     * Copy the outages in progress, and the most recent completed outages.
+     * @param source Source datastore name filter, or null
+     * @param subscription Subscription name filter, or null
+     * @param limit Maximum number of the completed outages
+     * @param recent Completed outages, newest first, filled in
+     * @return Outages in progress
+     */
+    private synchronized List<OutageHistory.Outage> copyOutages(String source,
+            String subscription, int limit, List<OutageHistory.Outage> recent) {
+        final List<OutageHistory.Outage> retval = new ArrayList<>();
+        if (history == null)
+            return retval;
+        for (OutageHistory.Outage o : open.values()) {
+            if (matches(o, source, subscription))
+                retval.add(o.copy());
+        }
+        for (int i = history.size() - 1; i >= 0 && recent.size() < limit; --i) {
+            final OutageHistory.Outage o = history.get(i);
+            if (matches(o, source, subscription))
+                recent.add(o);
+        }
+        return retval;
+    }
+
+    private synchronized int countOpen() {
+        return open.size();
+    }
+
+    /**
+     * Build the outage report: time to recover (MTTR) and repair time
+     * percentiles per source datastore and per failure class,
+     * outages in progress, and the recent outages.
+     * @param source Source datastore name to filter the outages listed, or null
+     * @param subscription Subscription name to filter the outages listed, or null
+     * @param limit Maximum number of the recent outages listed
+     * @return Report text
+     */
+    public String report(String source, String subscription, int limit) {
+        final Statistics stats = statistics();
+        if (stats == null)
+            return "Outage tracking is disabled";
+        final List<OutageHistory.Outage> recent = new ArrayList<>();
+        final List<OutageHistory.Outage> current =
+                copyOutages(source, subscription, limit, recent);
+        final StringBuilder sb = new StringBuilder();
+        sb.append("outages completed=").append(stats.completed)
+                .append(" open=").append(countOpen()).append('\n');
+        appendStats(sb, "mttr", "source", stats.mttrSource);
+        appendStats(sb, "mttr", "class", stats.mttrClass);
+        appendStats(sb, "repair", "source", stats.repairSource);
+        appendStats(sb, "repair", "class", stats.repairClass);
+        final long now = System.currentTimeMillis();
+        for (OutageHistory.Outage o : current) {
+            sb.append("open");
+            appendOutage(sb, o);
+            sb.append(" for=").append(formatDuration(now - o.detected)).append('\n');
+        }
+        for (OutageHistory.Outage o : recent) {
+            sb.append("outage");
+            appendOutage(sb, o);
+            sb.append(" outcome=").append(o.getOutcomeName())
+                    .append(" recovered=").append(Instant.ofEpochMilli(o.recovered))
+                    .append(" duration=").append(formatDuration(o.getDuration()))
+                    .append('\n');
+        }
+        return sb.toString().trim();
+    }
+
+    private static boolean matches(OutageHistory.Outage o, String source, String subscription) {
+        if (source != null && !Misc.nameKey(source).equals(Misc.nameKey(o.source)))
+            return false;
+        if (subscription != null
+                && !Misc.nameKey(subscription).equals(Misc.nameKey(o.subscription)))
+            return false;
+        return true;
+    }
+
+    private static void appendStats(StringBuilder sb, String kind, String group,
+            Map<String, OutageHistory.Stats> stats) {
+        for (Map.Entry<String, OutageHistory.Stats> me : stats.entrySet()) {
+            final OutageHistory.Stats s = me.getValue();
+            sb.append(kind).append(' ').append(group).append('=').append(me.getKey())
+                    .append(" count=").append(s.getCount())
+                    .append(" p50=").append(formatDuration(s.getPercentile(0.5)))
+                    .append(" p90=").append(formatDuration(s.getPercentile(0.9)))
+                    .append(" p99=").append(formatDuration(s.getPercentile(0.99)))
+                    .append(" max=").append(formatDuration(s.getMax()))
+                    .append('\n');
+        }
+    }
+
+    private static void appendOutage(StringBuilder sb, OutageHistory.Outage o) {
+        sb.append(" subscription=").append(o.subscription)
+                .append(" source=").append(o.source)
+                .append(" target=").append(o.target)
+                .append(" class=").append(o.failureClass)
+                .append(" detected=").append(Instant.ofEpochMilli(o.detected));
+        if (o.repairStart != 0L) {
+            sb.append(" repair_start=").append(Instant.ofEpochMilli(o.repairStart))
+                    .append(" attempts=").append(o.attempts);
+        }
+        if (o.repairEnd != 0L)
+            sb.append(" repair_end=").append(Instant.ofEpochMilli(o.repairEnd));
+    }
+
+    private static String formatDuration(long millis) {
+        return String.format(Locale.ROOT, "%.1fs", millis / 1000.0);
+    }
+
+    /**
+     * Write the time to recover and repair time summaries.
+     * @param writer Output
+     */
+    public void collect(PrometheusWriter writer) {
+        final Statistics stats = statistics();
+        if (stats == null)
+            return;
+        writeSummary(writer, "mttr_source_seconds", "source",
+                "Time from outage detection to recovery, per source datastore",
+                stats.mttrSource);
+        writeSummary(writer, "mttr_class_seconds", "class",
+                "Time from outage detection to recovery, per failure class",
+                stats.mttrClass);
+        writeSummary(writer, "outage_repair_source_seconds", "source",
+                "Repair duration within the outages, per source datastore",
+                stats.repairSource);
+        writeSummary(writer, "outage_repair_class_seconds", "class",
+                "Repair duration within the outages, per failure class",
+                stats.repairClass);
+        writer.header("outages_open", "gauge", "Subscription outages in progress");
+        writer.sample("outages_open", countOpen());
+    }
+
+    private static void writeSummary(PrometheusWriter writer, String name, String label,
+            String help, Map<String, OutageHistory.Stats> stats) {
+        if (stats.isEmpty())
+            return;
+        writer.header(name, "summary", help);
+        for (Map.Entry<String, OutageHistory.Stats> me : stats.entrySet()) {
+            final OutageHistory.Stats s = me.getValue();
+            for (double q : QUANTILES) {
+                writer.sample(name, seconds(s.getPercentile(q)),
+                        label, me.getKey(), "quantile", String.valueOf(q));
+            }
+            writer.sample(name + "_sum", seconds(s.getTotal()), label, me.getKey());
+            writer.sample(name + "_count", s.getCount(), label, me.getKey());
+        }
+    }
+
+    private static String seconds(long millis) {
+        return String.valueOf(millis / 1000.0);
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Bounded capture of the command output.
+ * Keeps the first and the last lines, dropping the middle part
+ * of the long outputs. The long lines are truncated.
+ * @author zinal
+ */
+public class OutputBuffer {
+
+    private static final int MAX_LINE = 4096;
+
+    private final int headLimit;
+    private final int tailLimit;
+    private final List<String> head = new ArrayList<>();
+    private final Deque<String> tail = new ArrayDeque<>();
+    private long skipped = 0L;
+
+    /**
+     * Create the buffer.
+     * @param maxLines Maximum number of lines kept, split between
+     *        the head and the tail of the output
+     */
+    public OutputBuffer(int maxLines) {
+        maxLines = Math.max(2, maxLines);
+        this.headLimit = maxLines / 2;
+        this.tailLimit = maxLines - headLimit;
+    }
+
+    public synchronized void add(String line) {
+        if (line.length() > MAX_LINE)
+            line = line.substring(0, MAX_LINE) + " ...";
+        if (head.size() < headLimit) {
+            head.add(line);
+            return;
+        }
+        if (tail.size() >= tailLimit) {
+            tail.removeFirst();
+            ++skipped;
+        }
+        tail.addLast(line);
+    }
+
+    /**
+     * @return Number of lines dropped from the middle of the output
+     */
+    public synchronized long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Append the captured output, one line per row.
+     * @param sb Output receiver
+     */
+    public synchronized void appendTo(StringBuilder sb) {
+        for (String line : head)
+            sb.append(line).append("\n");
+        if (skipped > 0L)
+            sb.append("... ").append(skipped).append(" line(s) skipped ...\n");
+        for (String line : tail)
+            sb.append(line).append("\n");
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+
+}
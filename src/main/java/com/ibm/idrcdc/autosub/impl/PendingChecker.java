@@ -22,6 +22,7 @@
 package com.ibm.idrcdc.autosub.impl;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -41,6 +42,12 @@ public class PendingChecker {
     private static final org.slf4j.Logger LOG =
             org.slf4j.LoggerFactory.getLogger(PendingChecker.class);
 
+    private static final MetricFamily<Histogram> CHECK_TIME = Metrics.timers(
+            "source_check", "source", "Subscription check time per source datastore");
+    private static final MetricFamily<Histogram> MONITOR_TIME = Metrics.timers(
+            "monitor_replication", "source",
+            "MONITOR REPLICATION execution time per source datastore");
+
     private final long startTime;
     private final AsGlobals globals;
     private final PerSource origin;
@@ -61,15 +68,30 @@ public class PendingChecker {
      * @return true, if there are subscriptions for recovery, and false otherwise
      */
     public boolean check() {
-        // Clean up all flags to their initial states
-        clearSubFlags();
+        final long tvStart = System.nanoTime();
+        try {
+            return checkStates();
+        } finally {
+            CHECK_TIME.get(origin.getName()).recordSince(tvStart);
+        }
+    }
+
+    private boolean checkStates() {
+        final SubscriptionStates states = origin.getStates();
+        states.startCycle();
         // Grab the subscription states
         script.dataStore(origin.getSource(), EngineMode.Source);
+        final long tvMonitor = System.nanoTime();
         script.execute("monitor replication;");
+        MONITOR_TIME.get(origin.getName()).recordSince(tvMonitor);
         final ScriptOutput table = script.getTable();
         for (int irow = 0; irow < table.getRowCount(); ++irow) {
-            checkRow(table, irow);
+            checkRow(states, table, irow);
         }
+        // Clean up the flags for subscriptions missing from the output
+        states.finishCycle();
+        LOG.debug("Source {}: {} of {} subscription state(s) changed",
+                origin, states.getChangedCount(), states.getRowCount());
         // Signal lost & found subscriptions
         checkMissingSubs();
         // Select altered tables based on dependencies
@@ -82,34 +104,40 @@ public class PendingChecker {
      * Subscription status validator.
      * Parses the row from MONITOR REPLICATION output,
      * and calls additional checks for the failed subscriptions.
+     * Rows with the state unchanged since the previous cycle are skipped,
+     * unless the subscription is failed.
+     * @param states Subscription states from the previous cycle
      * @param table MONITOR REPLICATION output
      * @param irow Row number
      * @return true, if the corresponding subscription should be recovered.
      */
-    private boolean checkRow(ScriptOutput table, int irow) {
+    private boolean checkRow(SubscriptionStates states, ScriptOutput table, int irow) {
         String subname = table.getValueAt(irow, "SUBSCRIPTION");
         String substate = table.getValueAt(irow, "STATE");
         String target = table.getValueAt(irow, "TARGET DATASTORE");
-        PerTarget pst = origin.findTarget(target);
-        if (pst==null)
-            return false; // Skip the unknown targets
-        Monitor m = pst.findMonitor(subname);
-        if (m==null) // Skip the unmonitored subscription
+        final SubscriptionStates.Entry e = states.update(target, subname, substate);
+        final Monitor m = e.getMonitor();
+        if (m==null) // Unknown target, unmonitored subscription or disabled target
             return false;
-        if (! m.getTarget().isEnabled())
-            return false; // The target datastore is not enabled
+        final boolean failed = "Failed".equalsIgnoreCase(substate);
+        if (!e.isProcessingNeeded()) // Flags are kept from the previous cycle
+            return false;
+        // Clean up all flags to their initial states
+        m.clearSubFlags();
         // Mark the subscription as known
         m.setKnown(true);
         if ("Mirror Continuous".equalsIgnoreCase(substate)) {
             // Okay, so it works now.
             // Report the recovery, if it failed previously.
             m.reportSubscriptionRecovered();
+            OutageTracker.getInstance().recovered(m);
             return false;
         }
         // Report the subscription as failed.
         m.reportSubscriptionFailed(substate);
+        OutageTracker.getInstance().failed(m, substate);
         // Check the actual failure reason
-        if ("Failed".equalsIgnoreCase(substate)) {
+        if (failed) {
             m.setRepair( checkMonitor(m) );
             return m.isRepairNeeded();
         }
@@ -129,36 +157,17 @@ public class PendingChecker {
                 return RepairMode.Disabled;
         }
         // Find the event with the altered table name in its text.
-        // We need the oldest message, but not older then subscription start.
-        AlterTableEventType messageType = null;
-        int messageIndex = -1;
-        script.execute("list subscription events name \"{0}\" type source;",
-                m.getSubscription().getName());
-        final ScriptOutput table = script.getTable();
-        for (int irow=0; irow < table.getRowCount(); ++irow) {
-            String eventId = table.getValueAt(irow, "EVENT ID");
-            if ("1463".equals(eventId)) {
-                // Subscription start, no need to scan further.
-                break;
-            }
-            AlterTableEventType fmt = AlterTableEventType.find(eventId);
-            if (fmt != null) {
-                messageType = fmt;
-                messageIndex = irow;
-            }
-        }
+        scanEvents(m);
+        final AlterTableEventType messageType =
+                AlterTableEventType.find(m.getEventId());
         if (messageType == null) {
             // Unsupported case - no message we could identify.
             m.reportCannotRepair();
             return RepairMode.Disabled;
         }
+        OutageTracker.getInstance().classify(m, messageType.id);
+        final String text = m.getEventText();
 
-        // We have a message to parse, now retrieving its text
-        script.execute("show subscription event details row {0} ;",
-                String.valueOf(messageIndex+1));
-        final String text = messageToLine(
-                script.getTable().getValueAt(1, 1) );
-        
         // Retrieve the altered table name from the messages.
         String tableName = null;
         boolean requireRefresh = false;
@@ -210,7 +219,7 @@ public class PendingChecker {
 
         // Seems to be a supported case.
         m.resetCannotRepair();
-        m.getAlteredTables().add(tableName);
+        m.addAlteredTable(tableName);
 
         LOG.debug("Probably able to repair the failed subscription {}, tables {}",
                 m.getSubscription(), m.getAlteredTables());
@@ -218,6 +227,81 @@ public class PendingChecker {
         return requireRefresh ? RepairMode.Refresh : RepairMode.Normal;
     }
 
+    /**
+     * Find the oldest altered table event since the subscription start.
+     * The result is saved in the monitor, along with the mark of the newest
+     * event seen. The following scans only look at the events newer than
+     * the mark, and reuse the saved result if no better candidate appears.
+     * @param m Monitor object for a subscription
+     */
+    private void scanEvents(Monitor m) {
+        script.execute("list subscription events name \"{0}\" type source;",
+                m.getSubscription().getName());
+        final ScriptOutput table = script.getTable();
+        if (table.getRowCount() == 0) {
+            m.setEventScan(null, null, null);
+            return;
+        }
+        final String oldMark = m.getEventMark();
+        final String newMark = eventSignature(table, 0);
+        if (newMark.equals(oldMark)) {
+            LOG.debug("No new events for subscription {}", m);
+            return;
+        }
+        // We need the oldest message, but not older then subscription start.
+        // Events are listed from the newest to the oldest.
+        AlterTableEventType messageType = null;
+        int messageIndex = -1;
+        boolean markReached = false;
+        for (int irow=0; irow < table.getRowCount(); ++irow) {
+            String eventId = table.getValueAt(irow, "EVENT ID");
+            if ("1463".equals(eventId)) {
+                // Subscription start, no need to scan further.
+                break;
+            }
+            if (oldMark != null && oldMark.equals(eventSignature(table, irow))) {
+                // Older events have been scanned already.
+                markReached = true;
+                break;
+            }
+            AlterTableEventType fmt = AlterTableEventType.find(eventId);
+            if (fmt != null) {
+                messageType = fmt;
+                messageIndex = irow;
+            }
+        }
+        if (markReached && m.getEventId() != null) {
+            // The older event found previously is still the oldest one.
+            m.setEventMark(newMark);
+            return;
+        }
+        String text = null;
+        if (messageType != null) {
+            // We have a message to parse, now retrieving its text
+            script.execute("show subscription event details row {0} ;",
+                    String.valueOf(messageIndex+1));
+            text = messageToLine( script.getTable().getValueAt(1, 1) );
+        }
+        m.setEventScan(newMark, (messageType==null) ? null : messageType.id, text);
+    }
+
+    /**
+     * Build the signature of the event, consisting of all the column values
+     * (including the event time and ID).
+     * @param table LIST SUBSCRIPTION EVENTS output
+     * @param irow Row number
+     * @return Event signature
+     */
+    private static String eventSignature(ScriptOutput table, int irow) {
+        final StringBuilder sb = new StringBuilder();
+        for (int icolumn = 0; icolumn < table.getColumnCount(); ++icolumn) {
+            if (icolumn > 0)
+                sb.append('\t');
+            sb.append(table.getValueAt(irow, icolumn));
+        }
+        return sb.toString();
+    }
+
     private static String messageToLine(String msg) {
         if (msg==null)
             return null;
@@ -306,19 +390,17 @@ public class PendingChecker {
         List<Monitor> pendingMonitors = origin.pendingMonitors();
         if (pendingMonitors.isEmpty())
             return; // nothing to do
-        // Grab the names of all the replicated tables in all subscriptions
+        // Grab the names of all the replicated tables in all subscriptions,
+        // unless already known from the previous checks.
         final List<Monitor> monitors = origin.allMonitors();
         for (Monitor m : monitors) {
-            m.getSourceTables().clear();
+            if (m.isSourceTablesValid(startTime, globals.getMappingTtl()))
+                continue;
             script.dataStore(m.getTarget().getName(), EngineMode.Target);
             script.execute("select subscription name \"{0}\";",
                     m.getSubscription().getName());
             script.execute("list table mappings;");
-            ScriptOutput mappings = script.getTable();
-            for ( int irow = 0; irow < mappings.getRowCount(); ++irow ) {
-                String tableName = mappings.getValueAt(irow, "SOURCE TABLE");
-                m.getSourceTables().add(tableName);
-            }
+            m.setSourceTables(listSourceTables(script.getTable()));
         }
         // Collect the names of all altered tables we've detected.
         final Map<String, List<Monitor>> candidates = new HashMap<>();
@@ -336,28 +418,26 @@ public class PendingChecker {
         LOG.debug("selectTables: candidates {}", candidates);
 
         final Set<String> selectedTables = new HashSet<>();
+        final TableIndex index = origin.getTableIndex();
+        index.refresh();
 
         // We have a list of altered tables,
-        // plus the list of all replicated tables per subscription.
+        // plus the index of all replicated tables per subscription.
         // To re-add the table, all the subscriptions with it should stop on it.
         for (Map.Entry<String, List<Monitor>> me : candidates.entrySet()) {
-            boolean allow = true;
-            for (Monitor m : monitors) {
-                if (m.getAlteredTables().contains(me.getKey()))
-                    continue; // Sub stopped at this table
-                if (m.getSourceTables().contains(me.getKey())) {
-                    // Sub replicates this table, and is not stopped on it.
-                    // Safe recovery is not possible.
-                    allow = false;
-                    // Disable the repairs for the affected subscriptions, and
-                    // print the warning messages.
-                    for (Monitor lockedMon : me.getValue()) {
-                        lockedMon.setRepair(RepairMode.Disabled);
-                        lockedMon.reportRecoveryLocked(me.getKey(), m);
-                    }
+            // Subscriptions stopped at this table
+            final BitSet stopped = index.toBitSet(me.getValue());
+            // Subscription which replicates this table, and is not stopped on it.
+            final Monitor locker = index.findLocker(me.getKey(), stopped);
+            if (locker != null) {
+                // Safe recovery is not possible.
+                // Disable the repairs for the affected subscriptions, and
+                // print the warning messages.
+                for (Monitor lockedMon : me.getValue()) {
+                    lockedMon.setRepair(RepairMode.Disabled);
+                    lockedMon.reportRecoveryLocked(me.getKey(), locker);
                 }
-            }
-            if (allow) {
+            } else {
                 selectedTables.add(me.getKey());
                 for (Monitor m : me.getValue())
                     m.resetRecoveryLocked();
@@ -383,6 +463,19 @@ public class PendingChecker {
         }
     }
     
+    /**
+     * Extract the source table names from LIST TABLE MAPPINGS output.
+     * @param mappings LIST TABLE MAPPINGS output
+     * @return List of source table names
+     */
+    public static List<String> listSourceTables(ScriptOutput mappings) {
+        final List<String> retval = new ArrayList<>(mappings.getRowCount());
+        for ( int irow = 0; irow < mappings.getRowCount(); ++irow ) {
+            retval.add(mappings.getValueAt(irow, "SOURCE TABLE"));
+        }
+        return retval;
+    }
+
     private static boolean plannedRefresh(List<Monitor> pendingMonitors) {
         for (Monitor m : pendingMonitors) {
             if (RepairMode.Refresh == m.getRepair())
@@ -391,17 +484,6 @@ public class PendingChecker {
         return false;
     }
 
-    /**
-     * Remove all known/repair flags and list of tables for all monitors.
-     */
-    private void clearSubFlags() {
-        for (PerTarget pst : origin.getTargets()) {
-            for (Monitor m : pst.getMonitors()) {
-                m.clearSubFlags();
-            }
-        }
-    }
-
     /**
      * Detect lost & found subscriptions - for logging only.
      */
@@ -0,0 +1,149 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Transport running each command as a separate process.
+ * @author zinal
+ */
+public class ProcessTransport implements RemoteTransport {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(ProcessTransport.class);
+
+    // Time to wait for the output to be drained after the process exit
+    private static final long DRAIN_WAIT = 5000L;
+
+    // threads draining the output of the running commands
+    private static final ExecutorService DRAINERS = Executors.newCachedThreadPool(
+            new DaemonThreadFactory("autosub-rsh-output"));
+
+    @Override
+    public String getName() {
+        return "process";
+    }
+
+    @Override
+    public int execute(RemoteTool tool, OutputBuffer output) {
+        final String[] command = tool.getCommand();
+        final long timeout = tool.getTimeout();
+        Process proc = null;
+        int retCode;
+        try {
+            proc = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .start();
+            final Process running = proc;
+            final Future<?> drainer = DRAINERS.submit(
+                    () -> drain(running, tool.getLogPrefix(), output));
+            if (timeout > 0L) {
+                if (proc.waitFor(timeout, TimeUnit.MILLISECONDS)) {
+                    retCode = proc.exitValue();
+                } else {
+                    retCode = RemoteTool.CODE_TIMEOUT;
+                    LOG.error("Command {} timed out after {} msec, killing it",
+                            tool.getLogPrefix(), timeout);
+                    killTree(proc);
+                }
+            } else {
+                retCode = proc.waitFor();
+            }
+            awaitDrain(drainer, tool.getLogPrefix());
+        } catch(InterruptedException ix) {
+            Thread.currentThread().interrupt();
+            LOG.error("Execution interrupted for command {}", (Object) command);
+            if (proc != null)
+                killTree(proc);
+            retCode = RemoteTool.CODE_FAILED;
+        } catch(Exception ex) {
+            LOG.error("Execution failed for command {}", (Object) command, ex);
+            retCode = RemoteTool.CODE_FAILED;
+        }
+        return retCode;
+    }
+
+    private static void drain(Process proc, String logPrefix, OutputBuffer output) {
+        try (BufferedReader br =
+                new BufferedReader(
+                        new InputStreamReader(proc.getInputStream()))) {
+            String line;
+            while ((line = br.readLine())!=null) {
+                output.add(line);
+                LOG.debug("{}: {}", logPrefix, line);
+            }
+        } catch(Exception ex) {
+            LOG.debug("Output reading failed for {}", logPrefix, ex);
+        }
+    }
+
+    /**
+     * Wait for the output to be drained. The descendant processes
+     * may hold the output open, so the wait is limited.
+     * @param drainer Output draining task
+     * @param logPrefix Command kind, for logging
+     * @throws InterruptedException
+     */
+    private static void awaitDrain(Future<?> drainer, String logPrefix)
+            throws InterruptedException {
+        try {
+            drainer.get(DRAIN_WAIT, TimeUnit.MILLISECONDS);
+        } catch(InterruptedException ix) {
+            throw ix;
+        } catch(Exception ex) {
+            LOG.debug("Output of {} is not complete", logPrefix);
+            drainer.cancel(true);
+        }
+    }
+
+    /**
+     * Kill the process along with all its descendants.
+     * Descendants can only be found with Java 9+,
+     * on Java 8 just the process itself is killed.
+     * @param proc Process to be killed
+     */
+    private static void killTree(Process proc) {
+        try {
+            final Stream<?> descendants = (Stream<?>)
+                    Process.class.getMethod("descendants").invoke(proc);
+            final Class<?> handleClass = Class.forName("java.lang.ProcessHandle");
+            final java.lang.reflect.Method destroy =
+                    handleClass.getMethod("destroyForcibly");
+            for (Object handle : descendants.toArray()) {
+                destroy.invoke(handle);
+            }
+        } catch(NoSuchMethodException | ClassNotFoundException ex) {
+            // Java 8, no process handles
+        } catch(Exception ex) {
+            LOG.debug("Failed to kill the descendant processes", ex);
+        }
+        proc.destroyForcibly();
+    }
+
+}
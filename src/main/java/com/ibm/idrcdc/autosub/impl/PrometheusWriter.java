@@ -0,0 +1,202 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Renders the metrics in the Prometheus text exposition format.
+ * Timers become histograms in seconds, counters get the "_total" suffix.
+ * All metric names get the "autosub_" prefix.
+ * @author zinal
+ */
+public class PrometheusWriter {
+
+    /**
+     * Prefix of all metric names.
+     */
+    public static final String PREFIX = "autosub_";
+
+    /**
+     * Source of the metrics which are not kept in the registry.
+     */
+    public static interface Collector {
+
+        /**
+         * Write the metrics.
+         * @param writer Output
+         */
+        void collect(PrometheusWriter writer);
+    }
+
+    private final StringBuilder sb = new StringBuilder(8192);
+
+    /**
+     * Render the registry metrics along with the collected ones.
+     * @param families Metric families from the registry
+     * @param collector Additional metrics source, or null
+     * @return Text in the Prometheus exposition format
+     */
+    public static String render(Collection<MetricFamily<?>> families, Collector collector) {
+        final PrometheusWriter writer = new PrometheusWriter();
+        for (MetricFamily<?> f : families)
+            writer.write(f);
+        if (collector != null)
+            collector.collect(writer);
+        return writer.toString();
+    }
+
+    /**
+     * Write the family header.
+     * @param name Metric name, without the prefix
+     * @param type Prometheus metric type: counter, gauge or histogram
+     * @param help Metric description
+     * @return this
+     */
+    public PrometheusWriter header(String name, String type, String help) {
+        sb.append("# HELP ").append(PREFIX).append(name).append(' ');
+        if (help != null)
+            sb.append(help.replace("\\", "\\\\").replace("\n", "\\n"));
+        sb.append('\n');
+        sb.append("# TYPE ").append(PREFIX).append(name).append(' ')
+                .append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * Write the sample.
+     * @param name Metric name, without the prefix
+     * @param value Sample value
+     * @param labels Label names and values, interleaved
+     * @return this
+     */
+    public PrometheusWriter sample(String name, String value, String... labels) {
+        sb.append(PREFIX).append(name);
+        if (labels.length > 1) {
+            sb.append('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0)
+                    sb.append(',');
+                sb.append(labels[i]).append("=\"");
+                escape(labels[i + 1]);
+                sb.append('"');
+            }
+            sb.append('}');
+        }
+        sb.append(' ').append(value).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, long value, String... labels) {
+        return sample(name, String.valueOf(value), labels);
+    }
+
+    /**
+     * Write all metrics of the registry family.
+     * @param f Metric family
+     */
+    public void write(MetricFamily<?> f) {
+        final Map<String, ?> metrics = f.getMetrics();
+        if (metrics.isEmpty())
+            return;
+        switch (f.getType()) {
+            case Timer:
+                writeTimers(f, metrics);
+                break;
+            case Counter:
+                header(f.getName() + "_total", "counter", f.getHelp());
+                for (Map.Entry<String, ?> me : metrics.entrySet()) {
+                    sample(f.getName() + "_total", ((LongAdder) me.getValue()).sum(),
+                            labels(f, me.getKey()));
+                }
+                break;
+            case Gauge:
+                header(f.getName(), "gauge", f.getHelp());
+                for (Map.Entry<String, ?> me : metrics.entrySet()) {
+                    sample(f.getName(), ((AtomicLong) me.getValue()).get(),
+                            labels(f, me.getKey()));
+                }
+                break;
+        }
+    }
+
+    private void writeTimers(MetricFamily<?> f, Map<String, ?> metrics) {
+        final String name = f.getName() + "_seconds";
+        final long[] bounds = Histogram.getBounds();
+        header(name, "histogram", f.getHelp());
+        for (Map.Entry<String, ?> me : metrics.entrySet()) {
+            final Histogram h = (Histogram) me.getValue();
+            // The count must match the +Inf bucket, so it is computed
+            // from the same bucket snapshot rather than read separately
+            final long[] buckets = h.getBuckets();
+            final String total = seconds(h.getTotal());
+            final String labelName = f.getLabelName();
+            final String label = me.getKey();
+            long cumulative = 0L;
+            for (int i = 0; i < buckets.length; ++i) {
+                cumulative += buckets[i];
+                final String le = (i < bounds.length) ? seconds(bounds[i]) : "+Inf";
+                if (labelName == null)
+                    sample(name + "_bucket", cumulative, "le", le);
+                else
+                    sample(name + "_bucket", cumulative, labelName, label, "le", le);
+            }
+            sample(name + "_sum", total, labels(f, label));
+            sample(name + "_count", cumulative, labels(f, label));
+        }
+    }
+
+    private static String[] labels(MetricFamily<?> f, String value) {
+        if (f.getLabelName() == null)
+            return new String[0];
+        return new String[] { f.getLabelName(), value };
+    }
+
+    private static String seconds(long millis) {
+        if (millis == 0L)
+            return "0";
+        return BigDecimal.valueOf(millis).movePointLeft(3)
+                .stripTrailingZeros().toPlainString();
+    }
+
+    private void escape(String v) {
+        for (int i = 0; i < v.length(); ++i) {
+            final char c = v.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '"': sb.append("\\\""); break;
+                case '\n': sb.append("\\n"); break;
+                default: sb.append(c);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+
+}
@@ -26,7 +26,9 @@ import com.ibm.idrcdc.autosub.monitor.*;
 import java.io.File;
 import java.io.PrintStream;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Recovery actions logging logic.
@@ -42,6 +44,10 @@ public class RecoveryReport {
     private final PerSource origin;
     private final PrintStream out;
     private final SimpleDateFormat sdf;
+    // Report receiving the buffered lines, null for the file-based report
+    private final RecoveryReport parent;
+    // Lines buffered until close, null for the file-based report
+    private final List<String> lines;
     
     public static boolean isEnabled() {
         return RR.get() != null;
@@ -52,6 +58,26 @@ public class RecoveryReport {
             RR.set(new RecoveryReport(globals, origin));
     }
 
+    /**
+     * @return Recovery report enabled for the current thread, or null
+     */
+    public static RecoveryReport current() {
+        return RR.get();
+    }
+
+    /**
+     * Enable the buffered recovery report for the current thread.
+     * The lines are collected in memory, and are written to the parent
+     * report as a single block on {@link #disable()}.
+     * Used to keep the output of the parallel actions readable.
+     * @param parent Parent report, as returned by {@link #current()},
+     *   or null if the recovery report is not enabled
+     */
+    public static void enableBuffered(RecoveryReport parent) {
+        if (parent != null && RR.get() == null)
+            RR.set(new RecoveryReport(parent));
+    }
+
     public static void disable() {
         RecoveryReport rr = RR.get();
         if (rr != null) {
@@ -86,10 +112,23 @@ public class RecoveryReport {
         this.origin = origin;
         this.out = out;
         this.sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        this.parent = null;
+        this.lines = null;
+    }
+
+    private RecoveryReport(RecoveryReport parent) {
+        this.origin = parent.origin;
+        this.out = null;
+        this.sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        this.parent = parent;
+        this.lines = new ArrayList<>();
     }
 
     private void close() {
-        if (out!=null) {
+        if (parent!=null) {
+            parent.write(lines);
+            lines.clear();
+        } else if (out!=null) {
             try {
                 out.close();
             } catch(Exception ex) {
@@ -98,14 +137,25 @@ public class RecoveryReport {
         }
     }
 
-    private void log(String category, String action) {
+    private synchronized void log(String category, String action) {
         final StringBuilder sb = new StringBuilder(
                 50 + category.length() + action.length());
         sb.append(sdf.format(new Date()))
                 .append("\t").append(category)
                 .append("\t").append(action);
-        if (out!=null)
+        if (lines!=null)
+            lines.add(sb.toString());
+        else if (out!=null)
             out.println(sb.toString());
     }
 
+    private synchronized void write(List<String> block) {
+        if (lines!=null) {
+            lines.addAll(block);
+        } else if (out!=null) {
+            for (String line : block)
+                out.println(line);
+        }
+    }
+
 }
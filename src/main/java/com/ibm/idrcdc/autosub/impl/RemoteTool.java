@@ -21,16 +21,21 @@
  */
 package com.ibm.idrcdc.autosub.impl;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.util.Collections;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringTokenizer;
+import com.ibm.idrcdc.autosub.config.AsEngine;
+import com.ibm.idrcdc.autosub.config.AsGlobals;
+import com.ibm.idrcdc.autosub.monitor.PerEngine;
 
 /**
  * Remote tool execution.
  * Used to run dmclearstagingstore, dmgetbookmark, dmsetbookmark, etc.
+ * The command is run through the transport configured for the engine.
  * @author zinal
  */
 public class RemoteTool {
@@ -42,72 +47,250 @@ public class RemoteTool {
     private static final String CAT_OUTPUT = "shell-output";
     private static final String CAT_STATUS = "shell-status";
 
+    /**
+     * Exit code reported when the command cannot be run.
+     */
+    public static final int CODE_FAILED = -1;
+
+    /**
+     * Exit code reported when the command has been killed on timeout.
+     */
+    public static final int CODE_TIMEOUT = -2;
+
+    private static final MetricFamily<Histogram> COMMAND_TIME = Metrics.timers(
+            "remote_command", "kind", "Remote command execution time");
+    private static final MetricFamily<LongAdder> COMMAND_ERRORS = Metrics.counters(
+            "remote_errors", "kind", "Remote command failures and timeouts");
+
+    // command kind (log prefix) -> execution statistics
+    private static final Map<String, CommandStats> STATS = new ConcurrentHashMap<>();
+    // persistent remote shell channels, per engine
+    private static final ShellChannelPool CHANNELS = new ShellChannelPool();
+    private static final RemoteTransport PROCESS = new ProcessTransport();
+    private static final RemoteTransport CHANNEL = new ChannelTransport(CHANNELS, PROCESS);
+    // engine configuration -> scripted transport
+    private static final Map<AsEngine, RemoteTransport> SCRIPTED =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static volatile long defaultTimeout = 1800000L;
+    private static volatile int defaultOutputLines = 1000;
+
+    private final PerEngine engine;
     private final String logPrefix;
     private final String commandText;
     private final Map<String,String> substitutions;
+    private long timeout = defaultTimeout;
+    private RemoteTransport transport;
+    private String[] command;
+    // command as actually run by the transport, for the recovery report
+    private String executed;
 
-    public RemoteTool(String logPrefix, String commandText, Map<String, String> substitutions) {
+    /**
+     * Create the command for the engine, to be run through
+     * the transport configured for the engine.
+     * @param engine Engine the command is run for, or null
+     * @param logPrefix Command kind, for logging and statistics
+     * @param commandText Command text
+     * @param substitutions Values for the ${NAME} placeholders
+     */
+    public RemoteTool(PerEngine engine, String logPrefix, String commandText,
+            Map<String, String> substitutions) {
+        this.engine = engine;
         this.logPrefix = logPrefix;
         this.commandText = commandText;
         this.substitutions = (substitutions == null) ? Collections.emptyMap() : substitutions;
+        this.transport = transportFor(engine);
+    }
+
+    public RemoteTool(String logPrefix, String commandText, Map<String, String> substitutions) {
+        this(null, logPrefix, commandText, substitutions);
     }
 
     public RemoteTool(String logPrefix, String commandText) {
-        this.logPrefix = logPrefix;
-        this.commandText = commandText;
-        this.substitutions = Collections.emptyMap();
+        this(null, logPrefix, commandText, Collections.emptyMap());
+    }
+
+    /**
+     * Set the global defaults for the command execution.
+     * @param globals Configuration options
+     */
+    public static void configure(AsGlobals globals) {
+        defaultTimeout = globals.getRemoteTimeout();
+        defaultOutputLines = globals.getRemoteOutputLines();
+        CHANNELS.configure(globals);
+    }
+
+    /**
+     * Close the persistent remote shell channels.
+     */
+    public static void shutdown() {
+        CHANNELS.close();
+    }
+
+    /**
+     * @return Execution statistics per command kind (log prefix)
+     */
+    public static Map<String, CommandStats> getStats() {
+        return Collections.unmodifiableMap(STATS);
+    }
+
+    /**
+     * Select the transport configured for the engine.
+     * @param engine Engine, or null for the default transport
+     * @return Transport to run the engine commands
+     */
+    public static RemoteTransport transportFor(PerEngine engine) {
+        if (engine == null)
+            return PROCESS;
+        final AsEngine ae = engine.getEngine();
+        switch (ae.getTransport()) {
+            case Channel:
+                return CHANNEL;
+            case Scripted:
+                return SCRIPTED.computeIfAbsent(ae,
+                        (k) -> new ScriptedTransport(k.getScriptedReplies()));
+            default:
+                return PROCESS;
+        }
+    }
+
+    /**
+     * @return Engine the command is run for, or null
+     */
+    public PerEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return Command kind, for logging and statistics
+     */
+    public String getLogPrefix() {
+        return logPrefix;
+    }
+
+    /**
+     * @return Command text, before the substitutions
+     */
+    public String getCommandText() {
+        return commandText;
+    }
+
+    /**
+     * @return Command line split into the arguments,
+     *   with the substitutions applied
+     */
+    public String[] getCommand() {
+        if (command == null) {
+            final String[] temp = new StringTokenizer(commandText)
+                    .setQuoteChar('"').getTokenArray();
+            for (int i=0; i<temp.length; ++i) {
+                temp[i] = substitute(temp[i]);
+            }
+            command = temp;
+        }
+        return command;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @param timeout Command timeout in milliseconds, 0 for no timeout
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Record the command as actually run, when the transport runs
+     * something other than the command line, e.g. the remote part
+     * of the command through the shell channel.
+     * @param executed Command description for the recovery report
+     */
+    public void setExecuted(String executed) {
+        this.executed = executed;
+    }
+
+    public RemoteTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Override the transport selected for the engine.
+     * @param transport Transport to run the command
+     */
+    public void setTransport(RemoteTransport transport) {
+        this.transport = (transport == null) ? PROCESS : transport;
     }
 
     public int execute() {
         return execute(null);
     }
 
+    /**
+     * Run the command, and wait for its completion.
+     * The output is captured in a bounded buffer, keeping
+     * the first and the last lines of the long outputs.
+     * @param output Receiver of the command output, or null
+     * @return Command exit code, {@link #CODE_FAILED} if the command
+     *   could not be run, or {@link #CODE_TIMEOUT} on timeout
+     */
     public int execute(StringBuilder output) {
-        final String[] command = new StringTokenizer(commandText)
-                .setQuoteChar('"').getTokenArray();
-        if (substitutions.isEmpty() == false) {
-            for (int i=0; i<command.length; ++i) {
-                String s = command[i];
-                if (!s.contains("${"))
-                    continue;
-                for (Map.Entry<String,String> me : substitutions.entrySet()) {
-                    String e = me.getKey();
-                    if (e.startsWith("${") == false)
-                        e = "${" + e + "}";
-                    s = s.replace(e, me.getValue());
-                }
-                command[i] = s;
-            }
-        }
-        LOG.debug("Running the command {}", (Object) command);
-        if (RecoveryReport.isEnabled()) {
-            RecoveryReport.logIf(CAT_COMMAND, toString(command));
+        final OutputBuffer buffer = new OutputBuffer(defaultOutputLines);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Running the command {} through the {} transport",
+                    (Object) getCommand(), transport.getName());
         }
+        executed = null;
+        final long tvStart = System.currentTimeMillis();
+        int retCode = CODE_FAILED;
         try {
-            final Process proc = new ProcessBuilder(command)
-                    .redirectErrorStream(true)
-                    .start();
-            try (BufferedReader br =
-                    new BufferedReader(
-                            new InputStreamReader(proc.getInputStream()))) {
-                String line;
-                while ((line = br.readLine())!=null) {
-                    if (output!=null) {
-                        output.append(line).append("\n");
-                    }
-                    LOG.debug("{}: {}", logPrefix, line);
-                    if (! StringUtils.isBlank(line))
-                        RecoveryReport.logIf(CAT_OUTPUT, line);
-                }
-            }
-            int retCode = proc.waitFor();
+            retCode = transport.execute(this, buffer);
             LOG.debug("Command completed with code {}", retCode);
-            RecoveryReport.logIf(CAT_STATUS, String.valueOf(retCode));
-            return retCode;
         } catch(Exception ex) {
-            LOG.error("Execution failed for command {}", (Object) command, ex);
-            return -1;
+            LOG.error("Execution failed for command {}", logPrefix, ex);
+        } finally {
+            final long millis = System.currentTimeMillis() - tvStart;
+            stats(logPrefix).record(millis, retCode, retCode == CODE_TIMEOUT);
+            COMMAND_TIME.get(logPrefix).record(millis);
+            if (retCode != 0)
+                COMMAND_ERRORS.get(logPrefix).increment();
+        }
+        if (output!=null)
+            buffer.appendTo(output);
+        if (RecoveryReport.isEnabled()) {
+            RecoveryReport.logIf(CAT_COMMAND,
+                    (executed != null) ? executed : toString(getCommand()));
+            // Only the bounded part of the output is saved to the report
+            for (String line : buffer.toString().split("\n")) {
+                if (! StringUtils.isBlank(line))
+                    RecoveryReport.logIf(CAT_OUTPUT, line);
+            }
+        }
+        RecoveryReport.logIf(CAT_STATUS, String.valueOf(retCode));
+        return retCode;
+    }
+
+    /**
+     * Replace the ${NAME} placeholders with their values.
+     * @param s Input text
+     * @return Text with the substitutions applied
+     */
+    public String substitute(String s) {
+        if (substitutions.isEmpty() || !s.contains("${"))
+            return s;
+        for (Map.Entry<String,String> me : substitutions.entrySet()) {
+            String e = me.getKey();
+            if (e.startsWith("${") == false)
+                e = "${" + e + "}";
+            s = s.replace(e, me.getValue());
         }
+        return s;
+    }
+
+    private static CommandStats stats(String name) {
+        return STATS.computeIfAbsent(name, CommandStats::new);
     }
 
     public static String toString(String[] cmd) {
@@ -144,6 +327,16 @@ public class RemoteTool {
         return false;
     }
 
+    public static int run(PerEngine engine, String logPrefix, String commandText,
+            Map<String, String> substitutions, StringBuilder output) {
+        return new RemoteTool(engine, logPrefix, commandText, substitutions) . execute(output);
+    }
+
+    public static int run(PerEngine engine, String logPrefix, String commandText,
+            StringBuilder output) {
+        return new RemoteTool(engine, logPrefix, commandText, null) . execute(output);
+    }
+
     public static int run(String logPrefix, String commandText,
             Map<String, String> substitutions, StringBuilder output) {
         return new RemoteTool(logPrefix, commandText, substitutions) . execute(output);
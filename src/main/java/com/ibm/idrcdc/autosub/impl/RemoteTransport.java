@@ -0,0 +1,48 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+/**
+ * Transport used to run the engine commands on behalf of {@link RemoteTool}.
+ * Implementations must be thread-safe, as a single transport
+ * instance runs the commands for many threads at once.
+ * @author zinal
+ */
+public interface RemoteTransport {
+
+    /**
+     * @return Transport name, for logging
+     */
+    String getName();
+
+    /**
+     * Run the command, and wait for its completion.
+     * Transports running something other than the command line
+     * record it through {@link RemoteTool#setExecuted(String)}.
+     * @param tool Command to be run, with its settings
+     * @param output Receiver of the command output
+     * @return Command exit code, {@link RemoteTool#CODE_FAILED} if the command
+     *   could not be run, or {@link RemoteTool#CODE_TIMEOUT} on timeout
+     */
+    int execute(RemoteTool tool, OutputBuffer output);
+
+}
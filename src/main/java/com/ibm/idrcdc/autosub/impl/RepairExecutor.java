@@ -0,0 +1,230 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2020 All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import com.ibm.idrcdc.autosub.monitor.*;
+import com.ibm.idrcdc.autosub.config.*;
+
+/**
+ * Executes the repairs of source datastores in parallel,
+ * in the background of the monitoring cycle.
+ * Two repairs are never run at the same time if they touch
+ * the same datastore, either as a source or as a target.
+ * @author zinal
+ */
+public class RepairExecutor {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(RepairExecutor.class);
+
+    private static final MetricFamily<AtomicLong> REPAIRS = Metrics.gauges(
+            "active_repairs", "status",
+            "Source datastores being repaired (running) or waiting for repair (queued)");
+
+    private final AsGlobals globals;
+    private final Supplier<Script> scripts;
+    private final int maxActive;
+    private final ExecutorService pool;
+
+    // guarded by this
+    private final List<PerSource> queue = new ArrayList<>();
+    // source datastore name -> datastore names locked by its repair
+    private final Map<String, Set<String>> active = new HashMap<>();
+    // datastore names locked by the running repairs
+    private final Set<String> busyEngines = new HashSet<>();
+    // sources for which the conflict has already been reported
+    private final Set<String> reportedConflicts = new HashSet<>();
+
+    /**
+     * Create the repair executor.
+     * @param globals Configuration options
+     * @param scripts Source of Access Server sessions, one per repair.
+     *        May return null if the connection cannot be established.
+     */
+    public RepairExecutor(AsGlobals globals, Supplier<Script> scripts) {
+        this.globals = globals;
+        this.scripts = scripts;
+        this.maxActive = Math.max(1, globals.getRepairThreads());
+        this.pool = Executors.newFixedThreadPool(maxActive,
+                new DaemonThreadFactory("autosub-repair"));
+    }
+
+    /**
+     * Put the source datastores to the repair queue.
+     * @param sources Source datastores to be repaired
+     */
+    public synchronized void submit(List<PerSource> sources) {
+        for (PerSource ps : sources) {
+            if (active.containsKey(ps.getName()) || queue.contains(ps))
+                continue; // Already scheduled
+            queue.add(ps);
+        }
+        schedule();
+        updateGauges();
+    }
+
+    /**
+     * Check whether the source datastore is queued for repair
+     * or is being repaired right now.
+     * Such sources should not be checked by the monitoring cycle.
+     * @param ps Source datastore
+     * @return true, if the repair is queued or running, false otherwise
+     */
+    public synchronized boolean isBusy(PerSource ps) {
+        return active.containsKey(ps.getName()) || queue.contains(ps);
+    }
+
+    /**
+     * @return true, if no repairs are queued or running, false otherwise
+     */
+    public synchronized boolean isIdle() {
+        return queue.isEmpty() && active.isEmpty();
+    }
+
+    /**
+     * Wait until all the queued and running repairs are completed.
+     */
+    public synchronized void awaitIdle() {
+        while (!queue.isEmpty() || !active.isEmpty()) {
+            try {
+                wait();
+            } catch(InterruptedException ix) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stop the executor. Queued repairs are cancelled,
+     * running repairs are allowed to complete.
+     */
+    public void shutdown() {
+        synchronized(this) {
+            queue.clear();
+            updateGauges();
+            if (!active.isEmpty()) {
+                LOG.info("Waiting for the running repairs of {} to complete...",
+                        active.keySet());
+            }
+        }
+        awaitIdle();
+        pool.shutdown();
+    }
+
+    /**
+     * Start the queued repairs which do not conflict
+     * with the running ones, up to the concurrency limit.
+     */
+    private void schedule() {
+        final Iterator<PerSource> it = queue.iterator();
+        while (it.hasNext() && active.size() < maxActive) {
+            final PerSource ps = it.next();
+            final Set<String> engines = lockedEngines(ps);
+            final String conflict = findConflict(engines);
+            if (conflict != null) {
+                if (reportedConflicts.add(ps.getName())) {
+                    LOG.info("Repairs for source datastore {} postponed, "
+                            + "datastore {} is being used by another repair",
+                            ps, conflict);
+                }
+                continue;
+            }
+            it.remove();
+            reportedConflicts.remove(ps.getName());
+            active.put(ps.getName(), engines);
+            busyEngines.addAll(engines);
+            pool.submit(() -> execute(ps));
+        }
+    }
+
+    private String findConflict(Set<String> engines) {
+        for (String name : engines) {
+            if (busyEngines.contains(name))
+                return name;
+        }
+        return null;
+    }
+
+    private synchronized void complete(PerSource ps) {
+        final Set<String> engines = active.remove(ps.getName());
+        if (engines != null)
+            busyEngines.removeAll(engines);
+        schedule();
+        updateGauges();
+        notifyAll();
+        if (isIdle()) // Let the working thread apply the deferred reload
+            FileFlag.wakeUp();
+    }
+
+    private void updateGauges() {
+        REPAIRS.get("running").set(active.size());
+        REPAIRS.get("queued").set(queue.size());
+    }
+
+    /**
+     * Collect the datastores affected by the repair of the source datastore.
+     * All subscriptions of the source are stopped and re-started,
+     * so all the configured targets are included.
+     * @param ps Source datastore
+     * @return Set of datastore names
+     */
+    private static Set<String> lockedEngines(PerSource ps) {
+        final Set<String> retval = new HashSet<>();
+        retval.add(ps.getName());
+        for (PerTarget pst : ps.getTargets()) {
+            retval.add(pst.getTarget().getName());
+        }
+        return retval;
+    }
+
+    /**
+     * Run the repairman on the specified source datastore.
+     * @param ps Per-source collection of monitors
+     */
+    private void execute(PerSource ps) {
+        try {
+            LOG.info("Repairs for source datastore {}...", ps);
+            try (Script script = scripts.get()) {
+                if (script != null)
+                    new Repairman(globals, ps, script, scripts) . run();
+            } catch(Exception ex) {
+                LOG.error("Repair sequence failed for datastore {}",
+                        ps.getSource().getName(), ex);
+            }
+        } finally {
+            complete(ps);
+        }
+    }
+
+}
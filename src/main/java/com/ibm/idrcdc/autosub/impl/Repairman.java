@@ -22,11 +22,19 @@
 package com.ibm.idrcdc.autosub.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
 import com.ibm.idrcdc.autosub.Worker;
@@ -42,19 +50,47 @@ public class Repairman implements Runnable {
     private static final org.slf4j.Logger LOG =
             org.slf4j.LoggerFactory.getLogger(Repairman.class);
 
+    // Initial and maximal delays between the stop confirmation polls
+    private static final long STOP_POLL_MIN = 250L;
+    private static final long STOP_POLL_MAX = 8000L;
+    // Up to this number of subscriptions are polled one by one,
+    // otherwise the whole source datastore state is grabbed
+    private static final int STOP_POLL_SINGLE = 3;
+
+    private static final MetricFamily<Histogram> PHASE_TIME = Metrics.timers(
+            "repair_phase", "phase", "Repair sequence phase duration");
+    private static final MetricFamily<Histogram> REPAIR_TIME = Metrics.timers(
+            "repair_sequence", "outcome", "Repair sequence duration per outcome");
+
     private final long startTime;
     private final AsGlobals globals;
     private final PerSource origin;
     private final Script script;
+    private final Supplier<Script> scripts;
 
     private final Map<String, String> subsToStart = new HashMap<>();
     private final Set<String> selectedTables;
 
     public Repairman(AsGlobals globals, PerSource origin, Script script) {
+        this(globals, origin, script, null);
+    }
+
+    /**
+     * Create the repairman which uses extra Access Server sessions
+     * to stop and start the subscriptions in parallel.
+     * @param globals Configuration options
+     * @param origin Source datastore to be repaired
+     * @param script Main Access Server session
+     * @param scripts Source of extra sessions, or null to use
+     *        the main session for everything
+     */
+    public Repairman(AsGlobals globals, PerSource origin, Script script,
+            Supplier<Script> scripts) {
         this.startTime = System.currentTimeMillis();
         this.globals = globals;
         this.origin = origin;
         this.script = script;
+        this.scripts = scripts;
         this.selectedTables = origin.alteredTables();
     }
 
@@ -90,34 +126,44 @@ public class Repairman implements Runnable {
         script.dataStore(origin.getSource(), EngineMode.Source);
 
         boolean repairSucceeded = false;
+        final long tvRepair = System.nanoTime();
+        final List<Monitor> attempted = new ArrayList<>(pending);
+        for (Monitor m : attempted)
+            OutageTracker.getInstance().repairStarted(m);
+        long tvPhase = tvRepair;
 
         try {
             // 1. Grab and print the bookmarks on target datastores.
-            if (globals.isGrabBookmarks())
+            if (globals.isGrabBookmarks()) {
                 printAllBookmarks();
+                tvPhase = phaseDone("bookmarks", tvPhase);
+            }
 
             // 2. Reading the column states
             for (Monitor m : getPendingSubs()) {
                 grabTableColumns(m);
             }
+            tvPhase = phaseDone("columns", tvPhase);
             if (getPendingSubs().isEmpty())
                 return; // Exit if we failed to read the column states
 
             // 3. Stop all the running subscriptions on the source datastore
             // (necessary for dmclearstagingstore)
             stopAllSubscriptions();
+            tvPhase = phaseDone("stop", tvPhase);
 
             // 4. Clear the staging store
-            if ( ! clearStagingStore() )
+            final boolean cleared = clearStagingStore();
+            tvPhase = phaseDone("clear", tvPhase);
+            if ( ! cleared )
                 return;
 
             // 5. Re-adding the altered tables
-            for (String tableFull : selectedTables) {
-                if (!readdTable(tableFull)) {
-                    // Mark all dependant subscriptions as non-recoverable
-                    markRepairFailed(tableFull);
-                }
+            for (String tableFull : readdTables()) {
+                // Mark all dependant subscriptions as non-recoverable
+                markRepairFailed(tableFull);
             }
+            tvPhase = phaseDone("readd", tvPhase);
             if (getPendingSubs().isEmpty())
                 return;
 
@@ -131,11 +177,13 @@ public class Repairman implements Runnable {
                     m.setFailureTime(0L);
                 }
             }
+            tvPhase = phaseDone("remap", tvPhase);
             if (getPendingSubs().isEmpty())
                 return;
 
             // 7. Restarting the subscriptions
             restartSubscriptions();
+            phaseDone("restart", tvPhase);
             repairSucceeded = true;
 
             pending = getPendingSubs();
@@ -154,6 +202,79 @@ public class Repairman implements Runnable {
                 LOG.info("Repair sequence HALTED for source datastore {}",
                         origin.getSource().getName());
             }
+            REPAIR_TIME.get(repairSucceeded ? "completed" : "halted").recordSince(tvRepair);
+            for (Monitor m : attempted) {
+                OutageTracker.getInstance().repairEnded(m, repairSucceeded
+                        && subsToStart.containsKey(m.getSubscription().getName()));
+            }
+        }
+    }
+
+    /**
+     * Register the duration of the repair phase.
+     * @param phase Phase name
+     * @param tvStart Phase start, as returned by {@link System#nanoTime()}
+     * @return Phase end, to be used as the start of the next phase
+     */
+    private static long phaseDone(String phase, long tvStart) {
+        final long tvFinish = System.nanoTime();
+        PHASE_TIME.get(phase).record((tvFinish - tvStart) / 1000000L);
+        return tvFinish;
+    }
+
+    /**
+     * Re-add the selected tables, running several re-add commands at once
+     * on the source datastore, up to the configured limit.
+     * @return List of tables which could not be re-added
+     */
+    private List<String> readdTables() {
+        final List<String> failed = new ArrayList<>();
+        final int threads = Math.min(globals.getReaddThreads(), selectedTables.size());
+        if (threads <= 1) {
+            for (String tableFull : selectedTables) {
+                if (!readdTable(tableFull))
+                    failed.add(tableFull);
+            }
+            return failed;
+        }
+        LOG.info("Re-adding {} tables, up to {} at once...",
+                selectedTables.size(), threads);
+        // Each table gets its own block in the recovery report
+        final RecoveryReport report = RecoveryReport.current();
+        final ExecutorService pool = Executors.newFixedThreadPool(threads,
+                new DaemonThreadFactory("autosub-readd-" + origin.getName()));
+        try {
+            final Map<String, Future<Boolean>> results = new LinkedHashMap<>();
+            for (String tableFull : selectedTables) {
+                results.put(tableFull, pool.submit(() -> {
+                    RecoveryReport.enableBuffered(report);
+                    try {
+                        return readdTable(tableFull);
+                    } finally {
+                        RecoveryReport.disable();
+                    }
+                }));
+            }
+            for (Map.Entry<String, Future<Boolean>> me : results.entrySet()) {
+                if (! waitReadd(me.getKey(), me.getValue()))
+                    failed.add(me.getKey());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return failed;
+    }
+
+    private static boolean waitReadd(String tableFull, Future<Boolean> f) {
+        try {
+            return f.get();
+        } catch(InterruptedException ix) {
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            return false;
+        } catch(ExecutionException ex) {
+            LOG.error("Failed to re-add table {}", tableFull, ex.getCause());
+            return false;
         }
     }
 
@@ -162,7 +283,7 @@ public class Repairman implements Runnable {
         final Map<String,String> subst = new HashMap<>();
         subst.put("TABLE", tableFull);
         final StringBuilder output = new StringBuilder();
-        int code = RemoteTool.run("readd-table",
+        int code = RemoteTool.run(origin.getSource(), "readd-table",
                 origin.getSource().cmdReAddTable(), subst, output);
         if (code!=0) {
             LOG.error("Failed to re-add table {}, status code {}.\n"
@@ -179,6 +300,8 @@ public class Repairman implements Runnable {
         if (mode == null || mode == RepairMode.Disabled)
             return false;
         LOG.info("Repairing the subscription {}", m.getSubscription());
+        // Table mappings are re-created, so re-read them on the next check
+        m.invalidateSourceTables();
         try {
             script.dataStore(m.getTarget(), EngineMode.Target);
             script.execute("select subscription name \"{0}\";",
@@ -216,6 +339,14 @@ public class Repairman implements Runnable {
         } catch(Exception ex) {
             m.markRepairFailed(startTime);
             LOG.info("\tFailed!", ex);
+            if (ex instanceof ScriptTimeoutException) {
+                // The session is lost, so halt the whole repair sequence.
+                throw (ScriptTimeoutException) ex;
+            }
+            // Pooled session is reused later, so do not leave the lock behind.
+            try {
+                script.execute("unlock subscription;");
+            } catch(Exception ex2) {}
             return false;
         }
     }
@@ -243,6 +374,10 @@ public class Repairman implements Runnable {
         } catch(Exception ex) {
             m.markRepairFailed(startTime);
             LOG.info("\tFailed!", ex);
+            if (ex instanceof ScriptTimeoutException) {
+                // The session is lost, so halt the whole repair sequence.
+                throw (ScriptTimeoutException) ex;
+            }
             return false;
         }
     }
@@ -322,22 +457,153 @@ public class Repairman implements Runnable {
         if (runningSubs.isEmpty())
             return;
         LOG.info("Stopping all running subscriptions for datastore {}...", origin.getSource());
-        for (Map.Entry<String, String> sub : runningSubs.entrySet()) {
-            LOG.info("\tStopping subscription {}...", sub.getKey());
-            script.dataStore(sub.getValue(), EngineMode.Target);
-            script.execute("select subscription name \"{0}\";", sub.getKey());
-            script.execute("end replication method immediate wait {0};",
-                    String.valueOf(globals.getWaitStartMirroring()));
+        // All stopped subscriptions must be restarted, even if some stops fail.
+        subsToStart.putAll(runningSubs);
+        final Map<String, Exception> failures =
+                forEachSubscription("stop", runningSubs, this::stopSubscription);
+        if (! failures.isEmpty()) {
+            for (Map.Entry<String, Exception> me : failures.entrySet()) {
+                LOG.error("Failed to stop subscription {}", me.getKey(), me.getValue());
+            }
+            throw new RuntimeException("Failed to stop subscription(s) "
+                    + failures.keySet());
         }
         LOG.info("\tWaiting for completion...");
-        while (listRunningSubscriptions().isEmpty() == false) {
+        awaitStopped(runningSubs);
+        LOG.info("\tComplete!...");
+    }
+
+    /**
+     * Wait for the subscriptions to stop, with the growing delays between
+     * the checks. Subscriptions still running after the escalation delay
+     * are stopped with "method abort". Failure to stop until the deadline
+     * is reported as an exception.
+     * @param subs Subscription name -> target datastore name
+     */
+    private void awaitStopped(Map<String, String> subs) {
+        final long start = System.currentTimeMillis();
+        final long escalateAt = start + globals.getStopEscalate();
+        final long deadline = start + globals.getStopTimeout();
+        final Map<String, String> awaited = new HashMap<>(subs);
+        boolean escalated = false;
+        long delay = STOP_POLL_MIN;
+        while (true) {
+            awaited.keySet().retainAll(stillRunning(awaited));
+            if (awaited.isEmpty())
+                return;
+            final long now = System.currentTimeMillis();
+            if (now >= deadline) {
+                throw new RuntimeException("Subscription(s) " + awaited.keySet()
+                        + " did not stop in " + globals.getStopTimeout() + " msec");
+            }
+            if (!escalated && now >= escalateAt) {
+                escalated = true;
+                LOG.warn("\tSubscription(s) {} still running, aborting replication...",
+                        awaited.keySet());
+                final Map<String, Exception> failures =
+                        forEachSubscription("abort", awaited, this::abortSubscription);
+                for (Map.Entry<String, Exception> me : failures.entrySet()) {
+                    LOG.error("Failed to abort subscription {}", me.getKey(), me.getValue());
+                }
+                delay = STOP_POLL_MIN;
+                continue;
+            }
             try {
-                Thread.sleep(500L);
-            } catch (InterruptedException ix) {}
+                Thread.sleep(Math.min(delay, deadline - now));
+            } catch (InterruptedException ix) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for "
+                        + "subscription(s) " + awaited.keySet() + " to stop");
+            }
+            delay = Math.min(2L * delay, STOP_POLL_MAX);
         }
-        LOG.info("\tComplete!...");
-        // All stopped subscriptions must be restarted.
-        subsToStart.putAll(runningSubs);
+    }
+
+    /**
+     * Check which of the subscriptions are still running.
+     * @param subs Subscription name -> target datastore name
+     * @return Names of running subscriptions
+     */
+    private Set<String> stillRunning(Map<String, String> subs) {
+        final Set<String> retval = new HashSet<>();
+        if (subs.size() > STOP_POLL_SINGLE) {
+            for (String subName : listRunningSubscriptions().keySet()) {
+                if (subs.containsKey(subName))
+                    retval.add(subName);
+            }
+            return retval;
+        }
+        for (Map.Entry<String, String> sub : subs.entrySet()) {
+            script.dataStore(sub.getValue(), EngineMode.Target);
+            script.execute("select subscription name \"{0}\";", sub.getKey());
+            script.execute("monitor replication filter subscription;");
+            final ScriptOutput table = script.getTable();
+            for (int irow = 0; irow < table.getRowCount(); ++irow) {
+                String substate = table.getValueAt(irow, "STATE");
+                if ("Mirror Continuous".equalsIgnoreCase(substate))
+                    retval.add(sub.getKey());
+            }
+        }
+        return retval;
+    }
+
+    private void stopSubscription(Script s, String subName, String targetName) {
+        LOG.info("\tStopping subscription {}...", subName);
+        s.dataStore(origin.getSource(), EngineMode.Source);
+        s.dataStore(targetName, EngineMode.Target);
+        s.execute("select subscription name \"{0}\";", subName);
+        s.execute("end replication method immediate wait {0};",
+                String.valueOf(globals.getWaitStartMirroring()));
+    }
+
+    private void abortSubscription(Script s, String subName, String targetName) {
+        LOG.info("\tAborting subscription {}...", subName);
+        s.dataStore(origin.getSource(), EngineMode.Source);
+        s.dataStore(targetName, EngineMode.Target);
+        s.execute("select subscription name \"{0}\";", subName);
+        s.execute("end replication method abort;");
+    }
+
+    private void startSubscription(Script s, String subName, String targetName) {
+        LOG.info("Starting subscription {}", subName);
+        s.dataStore(origin.getSource(), EngineMode.Source);
+        s.dataStore(targetName, EngineMode.Target);
+        s.execute("select subscription name \"{0}\";", subName);
+        try { // Locked subscriptions cannot be started
+            s.execute("unlock subscription;");
+        } catch(Exception ex) {}
+        s.execute("start mirroring wait {0};",
+                String.valueOf(globals.getWaitStartMirroring()));
+    }
+
+    /**
+     * Run the action for each of the subscriptions, in parallel
+     * when the extra sessions are available.
+     * @param label Action name, for the thread names
+     * @param subs Subscription name -> target datastore name
+     * @param action Action to be executed
+     * @return Failed subscription name -> failure reason
+     */
+    private Map<String, Exception> forEachSubscription(String label,
+            Map<String, String> subs, SubscriptionBatch.Action action) {
+        // Extra sessions are also used when the main one has been lost
+        // on the command timeout, to restart the stopped subscriptions.
+        final boolean useMain = (scripts == null) || ( !script.isBroken()
+                && (globals.getRestartThreads() <= 1 || subs.size() < 2) );
+        if (useMain) {
+            final Map<String, Exception> failures = new HashMap<>();
+            for (Map.Entry<String, String> sub : subs.entrySet()) {
+                try {
+                    action.apply(script, sub.getKey(), sub.getValue());
+                } catch(Exception ex) {
+                    failures.put(sub.getKey(), ex);
+                }
+            }
+            return failures;
+        }
+        return new SubscriptionBatch("autosub-" + label + "-" + origin.getName(),
+                scripts, script, globals.getRestartThreads(), globals.getRestartPerTarget())
+                . run(subs, action);
     }
 
     private boolean clearStagingStore() {
@@ -345,7 +611,8 @@ public class Repairman implements Runnable {
         final String command = origin.getSource().cmdClear();
         Map<String,String> subst = new HashMap<>();
         subst.put("SOURCE", origin.getSource().getName());
-        int retval = RemoteTool.run("clear-staging", command, subst);
+        int retval = RemoteTool.run(origin.getSource(), "clear-staging",
+                command, subst, null);
         if (retval != 0) {
             markRepairFailed(null); // mark repair failure for all subscriptions
             LOG.error("Cannot clear the staging store on source, status code {}. "
@@ -371,7 +638,8 @@ public class Repairman implements Runnable {
         if (StringUtils.isBlank(command))
             throw new RuntimeException("Get bookmark command not configured");
         final StringBuilder data = new StringBuilder();
-        int retval = RemoteTool.run("get-bookmark", command, m.substGetBookmark(), data);
+        int retval = RemoteTool.run(m.getTarget(), "get-bookmark",
+                command, m.substGetBookmark(), data);
         if (retval!=0) {
             LOG.warn("Get bookmark command failed with code {}.\n"
                     + "---- BEGIN OUTPUT ----\n"
@@ -400,23 +668,53 @@ public class Repairman implements Runnable {
     }
 
     private void restartSubscriptions() {
-        for (Map.Entry<String, String> sub : subsToStart.entrySet()) {
-            LOG.info("Starting subscription {}", sub.getKey());
-            try {
-                script.dataStore(sub.getValue(), EngineMode.Target);
-                script.execute("select subscription name \"{0}\";", sub.getKey());
-                try { // Locked subscriptions cannot be started
-                    script.execute("unlock subscription;");
-                } catch(Exception ex) {}
-                script.execute("start mirroring wait {0};",
-                        String.valueOf(globals.getWaitStartMirroring()));
-            } catch(Exception ex) {
-                LOG.error("Failed to start subscription {}", sub.getKey(), ex);
-            }
+        if (subsToStart.isEmpty())
+            return;
+        final Map<String, Exception> failures =
+                forEachSubscription("start", subsToStart, this::startSubscription);
+        for (Map.Entry<String, Exception> me : failures.entrySet()) {
+            LOG.error("Failed to start subscription {}", me.getKey(), me.getValue());
         }
+        reportMirroring(subsToStart.keySet());
         subsToStart.clear();
     }
 
+    /**
+     * Check which of the started subscriptions have reached
+     * the Mirror Continuous state, and report the results.
+     * @param started Names of the started subscriptions
+     */
+    private void reportMirroring(Collection<String> started) {
+        final Set<String> running = new HashSet<>();
+        try {
+            script.dataStore(origin.getSource(), EngineMode.Source);
+            for (String subName : listRunningSubscriptions().keySet())
+                running.add(Misc.nameKey(subName));
+        } catch(Exception ex) {
+            LOG.warn("Cannot check the state of the started subscriptions "
+                    + "for datastore {}", origin.getName(), ex);
+            return;
+        }
+        final List<String> mirroring = new ArrayList<>();
+        final List<String> other = new ArrayList<>();
+        for (String subName : started) {
+            if (running.contains(Misc.nameKey(subName)))
+                mirroring.add(subName);
+            else
+                other.add(subName);
+        }
+        if (other.isEmpty()) {
+            LOG.info("All started subscriptions for datastore {} are mirroring: {}",
+                    origin.getName(), mirroring);
+        } else {
+            LOG.warn("Started subscriptions for datastore {}: mirroring {}, "
+                    + "NOT mirroring {}", origin.getName(), mirroring, other);
+        }
+        RecoveryReport.logIf("mirroring", "Datastore " + origin.getName()
+                + ", mirroring " + mirroring.toString()
+                + ", not mirroring " + other.toString());
+    }
+
     private List<Monitor> getPendingSubs() {
         return origin.pendingMonitors();
     }
@@ -24,6 +24,15 @@ package com.ibm.idrcdc.autosub.impl;
 import java.text.MessageFormat;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import com.ibm.replication.cdc.scripting.EmbeddedScript;
 import com.ibm.replication.cdc.scripting.EmbeddedScriptException;
 import com.ibm.replication.cdc.scripting.Result;
@@ -45,7 +54,37 @@ public class Script implements AutoCloseable {
     private static final String CAT_COMMAND = "chcclp-command";
     private static final String CAT_ERROR = "chcclp-error";
 
+    private static final MetricFamily<Histogram> COMMAND_TIME = Metrics.timers(
+            "chcclp_command", "verb", "CHCCLP command execution time");
+    private static final MetricFamily<LongAdder> COMMAND_ERRORS = Metrics.counters(
+            "chcclp_errors", "verb", "CHCCLP command failures and timeouts");
+    private static final LongAdder COMMAND_COUNT = Metrics.counters(
+            "chcclp_commands", null, "CHCCLP round trips").get();
+    private static final MetricFamily<Histogram> CONNECT_TIME = Metrics.timers(
+            "as_connect", "outcome", "Access Server connection time per outcome");
+
+    // total number of CHCCLP round trips avoided by skipping no-op context switches
+    private static final AtomicLong SKIPPED_TOTAL = new AtomicLong();
+
+    // threads running the CHCCLP commands, so that the callers can stop
+    // waiting for the hung commands
+    private static final ExecutorService RUNNER = Executors.newCachedThreadPool(
+            new DaemonThreadFactory("autosub-chcclp"));
+
+    private final AsGlobals globals;
     private final EmbeddedScript es;
+    // the pool to return the session to on close, or null for standalone sessions
+    private final ScriptPool pool;
+    // true while the pooled session is used by somebody
+    private boolean borrowed = false;
+    // true if some command failed since the last validation
+    private boolean failed = false;
+    // time of last use, for the idle session validation
+    private long lastUsed;
+    // true after the command timeout, the session is never reused then
+    private volatile boolean broken = false;
+    // true after the underlying connection has been closed
+    private final AtomicBoolean closed = new AtomicBoolean(false);
 
     // current set of open connections, by names
     private final Set<String> connections = new HashSet<>();
@@ -53,6 +92,8 @@ public class Script implements AutoCloseable {
     private String currentSource = null;
     // name of the current target datastore
     private String currentTarget = null;
+    // number of CHCCLP round trips avoided by skipping no-op context switches
+    private long skippedSwitches = 0L;
 
     /**
      * Create new Access Server connection through the embedded
@@ -61,6 +102,21 @@ public class Script implements AutoCloseable {
      * @throws Exception
      */
     public Script(AsGlobals globals) throws Exception {
+        this(globals, (ScriptPool) null);
+    }
+
+    /**
+     * Create new Access Server connection through the embedded
+     * scripting interface, as a member of the session pool.
+     * @param globals Configuration options
+     * @param pool Session pool, or null for standalone session
+     * @throws Exception
+     */
+    Script(AsGlobals globals, ScriptPool pool) throws Exception {
+        this.globals = globals;
+        this.pool = pool;
+        this.lastUsed = System.currentTimeMillis();
+        final long tvStart = System.nanoTime();
         EmbeddedScript temp = new EmbeddedScript();
         try {
             temp.open();
@@ -71,7 +127,8 @@ public class Script implements AutoCloseable {
                     String.valueOf(globals.getAccessServerPort()),
                     globals.getAccessServerLogin(),
                     globals.getAccessServerPassword());
-            temp.execute(cmd);
+            // The command text is not logged, as it contains the password
+            runTimed(temp, cmd, "connect server", globals.getConnectTimeout());
             int code = temp.getResultCode();
             if ( code != 0  && code != 1101 ) {
                 throw new Exception("Cannot connect: "
@@ -80,11 +137,35 @@ public class Script implements AutoCloseable {
             this.es = temp;
             temp = null;
         } finally {
-            if (temp!=null)
-                temp.close();
+            if (temp!=null) {
+                // The connection may be hung, so close it in background
+                final EmbeddedScript dead = temp;
+                RUNNER.execute(() -> closeQuietly(dead));
+            }
+            CONNECT_TIME.get((temp==null) ? "ok" : "failed").recordSince(tvStart);
         }
     }
 
+    /**
+     * Wrap the already opened embedded scripting session.
+     * Used by the tests.
+     * @param globals Configuration options
+     * @param es Embedded scripting session
+     */
+    Script(AsGlobals globals, EmbeddedScript es) {
+        this.globals = globals;
+        this.pool = null;
+        this.lastUsed = System.currentTimeMillis();
+        this.es = es;
+    }
+
+    /**
+     * @return Total number of CHCCLP round trips, for all the sessions
+     */
+    public static long getCommandsTotal() {
+        return COMMAND_COUNT.sum();
+    }
+
     /**
      * @return Name of current source datastore
      */
@@ -99,6 +180,22 @@ public class Script implements AutoCloseable {
         return currentTarget;
     }
 
+    /**
+     * @return Number of round trips avoided in this session
+     *   by skipping the datastore switches to the current context
+     */
+    public long getSkippedSwitches() {
+        return skippedSwitches;
+    }
+
+    /**
+     * @return Number of round trips avoided in all sessions
+     *   by skipping the datastore switches to the current context
+     */
+    public static long getSkippedSwitchesTotal() {
+        return SKIPPED_TOTAL.get();
+    }
+
     /**
      * Connect or select a data store.
      * @param engine Data store configuration object
@@ -119,10 +216,63 @@ public class Script implements AutoCloseable {
 
     /**
      * Connect or select a data store.
+     * Nothing is executed if the data store is already selected
+     * in the requested context.
+     * If the existing connection to the data store does not work
+     * (which may happen for the long-living pooled sessions),
+     * the data store is re-connected.
      * @param name Data store name, case sensitive
      * @param mode Source, Target or Both
      */
     public void dataStore(String name, EngineMode mode) {
+        if (isCurrent(name, mode)) {
+            // No-op switch, plus the context dump in debug mode
+            final int skipped = LOG.isDebugEnabled() ? 2 : 1;
+            skippedSwitches += skipped;
+            SKIPPED_TOTAL.addAndGet(skipped);
+            return;
+        }
+        if (! connections.contains(name)) {
+            switchDataStore(name, mode);
+            return;
+        }
+        try {
+            switchDataStore(name, mode);
+        } catch(RuntimeException ex) {
+            LOG.debug("Re-connecting datastore {} after error", name, ex);
+            connections.remove(name);
+            if (name.equals(currentSource))
+                currentSource = null;
+            if (name.equals(currentTarget))
+                currentTarget = null;
+            try { // The old connection may be already dropped
+                execute("disconnect datastore name \"{0}\";", name);
+            } catch(Exception ex2) {}
+            switchDataStore(name, mode);
+        }
+    }
+
+    private boolean isCurrent(String name, EngineMode mode) {
+        if (! connections.contains(name))
+            return false;
+        switch (mode) {
+            case Source:
+                return name.equals(currentSource);
+            case Target:
+                return name.equals(currentTarget);
+            case Dual:
+                return name.equals(currentSource) && name.equals(currentTarget);
+            default:
+                return false;
+        }
+    }
+
+    private void switchDataStore(String name, EngineMode mode) {
+        // The context is unknown until the command succeeds
+        if (mode != EngineMode.Target)
+            currentSource = null;
+        if (mode != EngineMode.Source)
+            currentTarget = null;
         switch (mode) {
             case Source:
                 if (connections.contains(name)) {
@@ -181,18 +331,99 @@ public class Script implements AutoCloseable {
     public void execute(String command, Object ... args) {
         final String cmd = (args.length > 0) ?
                 MessageFormat.format(command, args) : command;
+        if (broken) {
+            throw new ScriptTimeoutException("Access Server session is broken "
+                    + "by an earlier timeout, command skipped: " + cmd, cmd, 0L);
+        }
+        final String verb = CommandClass.verb(cmd);
+        final long tvStart = System.nanoTime();
+        COMMAND_COUNT.increment();
         try {
             LOG.debug("CHCCLP> {}", cmd);
             RecoveryReport.logIf(CAT_COMMAND, cmd);
-            es.execute(cmd);
+            runTimed(es, cmd, cmd, CommandClass.timeout(globals, cmd));
         } catch(EmbeddedScriptException ese) {
+            COMMAND_ERRORS.get(verb).increment();
+            failed = true;
+            // The failure may be caused by the dropped datastore connection,
+            // so the next dataStore() call has to re-select (and possibly
+            // re-connect) the datastore instead of skipping the switch.
+            currentSource = null;
+            currentTarget = null;
             String messageAndCode = ese.getResultCodeAndMessage();
             LOG.debug("CHCCLP ERROR: {}", messageAndCode);
             RecoveryReport.logIf(CAT_ERROR, messageAndCode);
             throw new RuntimeException(messageAndCode, ese);
+        } catch(ScriptTimeoutException ste) {
+            COMMAND_ERRORS.get(verb).increment();
+            LOG.warn("{}", ste.getMessage());
+            RecoveryReport.logIf(CAT_ERROR, ste.getMessage());
+            abort();
+            throw ste;
+        } finally {
+            COMMAND_TIME.get(verb).recordSince(tvStart);
+        }
+    }
+
+    /**
+     * Run the command, waiting for its completion no longer than allowed.
+     * @param es Scripting interface
+     * @param cmd Command text
+     * @param display Command text to be used in the messages
+     * @param timeout Command timeout in milliseconds, 0 for no timeout
+     * @throws EmbeddedScriptException on command failure
+     * @throws ScriptTimeoutException if the command did not complete in time
+     */
+    private static void runTimed(EmbeddedScript es, String cmd, String display,
+            long timeout) throws EmbeddedScriptException {
+        if (timeout <= 0L) {
+            es.execute(cmd);
+            return;
+        }
+        final Future<?> f = RUNNER.submit(() -> {
+            es.execute(cmd);
+            return null;
+        });
+        try {
+            f.get(timeout, TimeUnit.MILLISECONDS);
+        } catch(TimeoutException tx) {
+            f.cancel(true);
+            throw new ScriptTimeoutException("CHCCLP command timed out after "
+                    + timeout + " msec: " + display, display, timeout);
+        } catch(InterruptedException ix) {
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ScriptTimeoutException("CHCCLP command interrupted: "
+                    + display, display, timeout);
+        } catch(ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+            if (cause instanceof EmbeddedScriptException)
+                throw (EmbeddedScriptException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
         }
     }
 
+    /**
+     * Mark the session as broken, and drop the underlying connection.
+     * The broken session is never reused.
+     */
+    private void abort() {
+        broken = true;
+        failed = true;
+        destroy();
+    }
+
+    /**
+     * @return true, if the session has been broken by the command timeout
+     */
+    public boolean isBroken() {
+        return broken;
+    }
+
     public int getCode() {
         return es.getResultCode();
     }
@@ -223,9 +454,75 @@ public class Script implements AutoCloseable {
                 + res.getClass().getName());
     }
 
+    /**
+     * Close the session, or return it to the pool for pooled sessions.
+     */
     @Override
     public void close() {
-        es.close();
+        if (pool == null) {
+            destroy();
+        } else if (borrowed) {
+            borrowed = false;
+            lastUsed = System.currentTimeMillis();
+            pool.release(this);
+        }
+    }
+
+    /**
+     * Close the underlying Access Server connection.
+     */
+    void destroy() {
+        if (! closed.compareAndSet(false, true))
+            return;
+        if (broken) {
+            // The hung connection may block the close, so do it in background
+            RUNNER.execute(() -> closeQuietly(es));
+        } else {
+            closeQuietly(es);
+        }
+    }
+
+    private static void closeQuietly(EmbeddedScript es) {
+        try {
+            es.close();
+        } catch(Exception ex) {
+            LOG.debug("Failed to close the Access Server session", ex);
+        }
+    }
+
+    void setBorrowed() {
+        this.borrowed = true;
+    }
+
+    boolean isFailed() {
+        return failed;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Check that the session is still operational
+     * by running a cheap command.
+     * @return true, if the session works, false otherwise
+     */
+    boolean validate() {
+        if (broken)
+            return false;
+        try {
+            runTimed(es, "list datastores;", "list datastores;",
+                    globals.getCommandTimeout());
+            failed = false;
+            return true;
+        } catch(ScriptTimeoutException ste) {
+            LOG.debug("Access Server session validation timed out");
+            broken = true;
+            return false;
+        } catch(Exception ex) {
+            LOG.debug("Access Server session validation failed", ex);
+            return false;
+        }
     }
 
     public static void printTable(ScriptOutput table) {
@@ -0,0 +1,124 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2020 All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import com.ibm.idrcdc.autosub.config.*;
+
+/**
+ * Pool of authenticated Access Server sessions.
+ * Sessions keep their datastore connections between the uses,
+ * so the repeated checks avoid the server login and datastore connects.
+ * Idle sessions are validated before the reuse, broken ones are
+ * replaced with the new connections.
+ * @author zinal
+ */
+public class ScriptPool implements AutoCloseable {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(ScriptPool.class);
+
+    private final AsGlobals globals;
+    // most recently used sessions first
+    private final Deque<Script> idle = new ArrayDeque<>();
+    private boolean closed = false;
+
+    public ScriptPool(AsGlobals globals) {
+        this.globals = globals;
+    }
+
+    /**
+     * Grab the working session from the pool, or open the new one.
+     * Closing the returned session puts it back to the pool.
+     * @return Access Server session
+     * @throws Exception if the new connection cannot be established
+     */
+    public Script borrow() throws Exception {
+        while (true) {
+            final Script script;
+            synchronized(this) {
+                script = idle.pollFirst();
+            }
+            if (script == null)
+                break;
+            if (isUsable(script)) {
+                script.setBorrowed();
+                return script;
+            }
+            LOG.debug("Evicting broken Access Server session");
+            script.destroy();
+        }
+        final Script script = new Script(globals, this);
+        script.setBorrowed();
+        return script;
+    }
+
+    /**
+     * Put the session back to the pool, or close it
+     * if the pool is full or closed.
+     * @param script Session being released
+     */
+    void release(Script script) {
+        synchronized(this) {
+            if (!closed && !script.isBroken()
+                    && idle.size() < globals.getSessionPoolSize()) {
+                idle.addFirst(script);
+                return;
+            }
+        }
+        script.destroy();
+    }
+
+    /**
+     * Sessions with recent command failures and the long unused sessions
+     * are re-validated before the use.
+     * @param script Idle session
+     * @return true, if the session can be used, false otherwise
+     */
+    private boolean isUsable(Script script) {
+        final long idleTime = System.currentTimeMillis() - script.getLastUsed();
+        if (script.isFailed() || idleTime >= globals.getSessionValidatePeriod())
+            return script.validate();
+        return true;
+    }
+
+    /**
+     * Close all the idle sessions.
+     * Sessions in use are closed on release.
+     */
+    @Override
+    public void close() {
+        final List<Script> temp;
+        synchronized(this) {
+            closed = true;
+            temp = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (Script script : temp) {
+            script.destroy();
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+/**
+ * CHCCLP command did not complete in time, or was not executed at all
+ * because the session has been broken by the earlier timeout.
+ * The session reporting this exception is never reused.
+ * @author zinal
+ */
+public class ScriptTimeoutException extends RuntimeException {
+
+    private final String command;
+    private final long timeout;
+
+    public ScriptTimeoutException(String message, String command, long timeout) {
+        super(message);
+        this.command = command;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return Text of the command which timed out, or was skipped
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * @return Command timeout in milliseconds, 0 if the command was skipped
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import com.ibm.idrcdc.autosub.config.AsScriptedReply;
+
+/**
+ * In-process transport returning the canned replies to the commands,
+ * without running anything. Used for local benchmarks and tests.
+ * The first reply matching the command line is returned,
+ * after the configured delay.
+ * @author zinal
+ */
+public class ScriptedTransport implements RemoteTransport {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(ScriptedTransport.class);
+
+    private final List<Reply> replies = new ArrayList<>();
+
+    public ScriptedTransport(List<AsScriptedReply> replies) {
+        for (AsScriptedReply r : replies) {
+            this.replies.add(new Reply(r));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "scripted";
+    }
+
+    @Override
+    public int execute(RemoteTool tool, OutputBuffer output) {
+        final String commandLine = String.join(" ", tool.getCommand());
+        for (Reply r : replies) {
+            if (r.pattern != null && !r.pattern.matcher(commandLine).find())
+                continue;
+            LOG.debug("Scripted reply {} for command {}", r.reply.getCode(), commandLine);
+            try {
+                if (! pause(r.reply.getDelay(), tool.getTimeout()))
+                    return RemoteTool.CODE_TIMEOUT;
+            } catch(InterruptedException ix) {
+                Thread.currentThread().interrupt();
+                return RemoteTool.CODE_FAILED;
+            }
+            if (r.reply.getOutput() != null) {
+                for (String line : tool.substitute(r.reply.getOutput()).split("\\r?\\n")) {
+                    output.add(line.trim());
+                }
+            }
+            return r.reply.getCode();
+        }
+        output.add("No scripted reply for the command: " + commandLine);
+        return RemoteTool.CODE_FAILED;
+    }
+
+    /**
+     * Simulate the execution time.
+     * @param delay Execution time, milliseconds
+     * @param timeout Command timeout, milliseconds, 0 for no timeout
+     * @return true, if the command completed, false on timeout
+     * @throws InterruptedException
+     */
+    private static boolean pause(long delay, long timeout)
+            throws InterruptedException {
+        if (delay <= 0L)
+            return true;
+        final boolean timedOut = (timeout > 0L) && (delay > timeout);
+        Thread.sleep(timedOut ? timeout : delay);
+        return !timedOut;
+    }
+
+    private static final class Reply {
+        final AsScriptedReply reply;
+        final Pattern pattern;
+
+        Reply(AsScriptedReply reply) {
+            this.reply = reply;
+            this.pattern = (reply.getMatch() == null) ? null
+                    : Pattern.compile(reply.getMatch());
+        }
+    }
+
+}
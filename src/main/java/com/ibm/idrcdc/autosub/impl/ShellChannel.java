@@ -0,0 +1,236 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent remote shell session, used to run a series of commands
+ * on the engine host without a separate remote shell connection per command.
+ * Commands are written to the shell's input, and each command's output
+ * is framed by the unique end marker carrying the exit status.
+ * The channel is used by a single thread at a time.
+ * @author zinal
+ */
+public class ShellChannel implements AutoCloseable {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(ShellChannel.class);
+
+    private static final String MARK_PREFIX = "__AUTOSUB_END_";
+    // end of output, compared by reference
+    private static final String EOF = new String("EOF");
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final DaemonThreadFactory READERS =
+            new DaemonThreadFactory("autosub-channel");
+
+    private final String engineName;
+    private final String[] rshCommand;
+    private final Process proc;
+    private final Writer stdin;
+    private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+    private final String nonce;
+    private volatile boolean broken = false;
+    private long lastUsed;
+
+    private ShellChannel(String engineName, String[] rshCommand, Process proc) {
+        this.engineName = engineName;
+        this.rshCommand = rshCommand.clone();
+        this.proc = proc;
+        this.stdin = new OutputStreamWriter(proc.getOutputStream(),
+                StandardCharsets.UTF_8);
+        this.nonce = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        this.lastUsed = System.currentTimeMillis();
+        READERS.newThread(this::readOutput).start();
+    }
+
+    /**
+     * Start the remote shell, and check that it runs the commands.
+     * @param engineName Datastore name, for the messages
+     * @param rshCommand Remote shell command, without the remote command part
+     * @param timeout Maximum time to wait for the shell to respond, msec
+     * @return Working channel
+     * @throws IOException if the shell does not work
+     */
+    public static ShellChannel open(String engineName, String[] rshCommand,
+            long timeout) throws IOException {
+        final Process proc = new ProcessBuilder(rshCommand)
+                .redirectErrorStream(true)
+                .start();
+        final ShellChannel channel = new ShellChannel(engineName, rshCommand, proc);
+        final int code;
+        try {
+            code = channel.run("true", new OutputBuffer(20), timeout);
+        } catch(IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        if (code != 0) {
+            channel.close();
+            throw new IOException("Remote shell for datastore " + engineName
+                    + " does not respond, status code " + code);
+        }
+        LOG.debug("Opened the persistent shell channel for datastore {}", engineName);
+        return channel;
+    }
+
+    public String getEngineName() {
+        return engineName;
+    }
+
+    /**
+     * @param command Remote shell command
+     * @return true, if the channel has been opened with the command
+     */
+    public boolean isOpenedWith(String[] command) {
+        return Arrays.equals(rshCommand, command);
+    }
+
+    /**
+     * @return true, if the channel cannot be used anymore
+     */
+    public boolean isBroken() {
+        return broken || !proc.isAlive();
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Run the command in the remote shell.
+     * On timeout or connection loss the channel becomes broken.
+     * @param command Shell command text
+     * @param output Receiver of the command output
+     * @param timeout Command timeout in milliseconds, 0 for no timeout
+     * @return Command exit code, {@link RemoteTool#CODE_TIMEOUT} on timeout,
+     *   or {@link RemoteTool#CODE_FAILED} on the connection loss
+     * @throws IOException if the command could not be sent,
+     *   so it can be safely retried in another way
+     */
+    public int run(String command, OutputBuffer output, long timeout)
+            throws IOException {
+        if (isBroken())
+            throw new IOException("Shell channel is broken");
+        final String mark = MARK_PREFIX + nonce + "_"
+                + Long.toHexString(SEQUENCE.incrementAndGet());
+        try {
+            // The command runs in a subshell, so that exit, cd and variable
+            // assignments do not affect the channel. Stdin is detached
+            // from the channel, stderr is merged into stdout.
+            stdin.write("( " + command + "\n) </dev/null 2>&1\n"
+                    + "printf '\\n%s %d\\n' " + mark + " $?\n");
+            stdin.flush();
+        } catch(IOException ex) {
+            broken = true;
+            throw ex;
+        }
+        lastUsed = System.currentTimeMillis();
+        final long deadline = lastUsed + timeout;
+        // The last line before the marker is held back, to drop
+        // the empty line added by the marker framing.
+        String held = null;
+        try {
+            while (true) {
+                final String line;
+                if (timeout > 0L) {
+                    final long left = deadline - System.currentTimeMillis();
+                    if (left <= 0L) {
+                        broken = true;
+                        return RemoteTool.CODE_TIMEOUT;
+                    }
+                    line = lines.poll(left, TimeUnit.MILLISECONDS);
+                    if (line == null)
+                        continue;
+                } else {
+                    line = lines.take();
+                }
+                if (line == EOF) {
+                    broken = true;
+                    LOG.debug("Shell channel for datastore {} closed unexpectedly",
+                            engineName);
+                    return RemoteTool.CODE_FAILED;
+                }
+                if (line.startsWith(mark)) {
+                    if (held != null && held.length() > 0)
+                        output.add(held);
+                    lastUsed = System.currentTimeMillis();
+                    return parseCode(line.substring(mark.length()).trim());
+                }
+                if (held != null)
+                    output.add(held);
+                held = line;
+            }
+        } catch(InterruptedException ix) {
+            Thread.currentThread().interrupt();
+            broken = true;
+            return RemoteTool.CODE_FAILED;
+        }
+    }
+
+    private static int parseCode(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch(NumberFormatException nfe) {
+            return RemoteTool.CODE_FAILED;
+        }
+    }
+
+    private void readOutput() {
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(proc.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                LOG.debug("{}: {}", engineName, line);
+                lines.add(line);
+            }
+        } catch(Exception ex) {
+            LOG.debug("Shell channel output failed for datastore {}", engineName, ex);
+        } finally {
+            lines.add(EOF);
+        }
+    }
+
+    /**
+     * Close the remote shell.
+     */
+    @Override
+    public void close() {
+        broken = true;
+        try {
+            stdin.close();
+        } catch(Exception ex) {}
+        proc.destroy();
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2019, 2020. All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.text.StringTokenizer;
+import com.ibm.idrcdc.autosub.config.*;
+
+/**
+ * Pool of persistent remote shell channels, per engine.
+ * Idle channels are health-checked before the reuse, broken ones
+ * are replaced with the new connections, as are the channels opened
+ * with the remote shell command changed since. When the channel cannot be
+ * established, the callers fall back to the per-command processes,
+ * and the new connection is retried after the validation period.
+ * @author zinal
+ */
+public class ShellChannelPool implements AutoCloseable {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(ShellChannelPool.class);
+
+    private int maxIdle = 2;
+    private long validatePeriod = 60000L;
+    private long connectTimeout = 60000L;
+
+    // engine name -> idle channels, most recently used first
+    private final Map<String, Deque<ShellChannel>> idle = new HashMap<>();
+    // engine name and remote shell command -> time of the last failed connection attempt
+    private final Map<String, Long> failures = new HashMap<>();
+    private boolean closed = false;
+
+    /**
+     * Apply the configuration settings.
+     * @param globals Configuration options
+     */
+    public synchronized void configure(AsGlobals globals) {
+        this.maxIdle = globals.getChannelPoolSize();
+        this.validatePeriod = globals.getSessionValidatePeriod();
+        this.connectTimeout = globals.getConnectTimeout();
+    }
+
+    /**
+     * Grab the working channel for the engine, or open the new one.
+     * @param engine Engine configuration
+     * @return Shell channel, or null if it cannot be established
+     */
+    public ShellChannel borrow(AsEngine engine) {
+        final String key = engine.getName();
+        final String[] rsh = new StringTokenizer(engine.getRemoteExec())
+                .setQuoteChar('"').getTokenArray();
+        final String failureKey = key + "\u0000" + engine.getRemoteExec();
+        while (true) {
+            final ShellChannel channel;
+            synchronized(this) {
+                if (closed)
+                    return null;
+                final Deque<ShellChannel> q = idle.get(key);
+                channel = (q == null) ? null : q.pollFirst();
+            }
+            if (channel == null)
+                break;
+            if (! channel.isOpenedWith(rsh)) {
+                // The remote shell command has been changed by the reload
+                LOG.debug("Evicting outdated shell channel for datastore {}", key);
+                channel.close();
+                continue;
+            }
+            if (isUsable(channel))
+                return channel;
+            LOG.debug("Evicting broken shell channel for datastore {}", key);
+            channel.close();
+        }
+        final long now = System.currentTimeMillis();
+        synchronized(this) {
+            final Long failedAt = failures.get(failureKey);
+            if (failedAt != null && now - failedAt < validatePeriod)
+                return null;
+        }
+        try {
+            final ShellChannel channel = ShellChannel.open(key, rsh, connectTimeout);
+            synchronized(this) {
+                if (failures.remove(failureKey) != null)
+                    LOG.info("Persistent shell channel restored for datastore {}", key);
+            }
+            return channel;
+        } catch(Exception ex) {
+            synchronized(this) {
+                if (failures.put(failureKey, now) == null) {
+                    LOG.warn("Cannot open the persistent shell channel for datastore {}, "
+                            + "using the separate processes\n\t{}",
+                            key, Misc.liteMessage(ex));
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Put the channel back to the pool, or close it.
+     * @param channel Channel being released
+     */
+    public void release(ShellChannel channel) {
+        synchronized(this) {
+            if (!closed && !channel.isBroken()) {
+                Deque<ShellChannel> q = idle.get(channel.getEngineName());
+                if (q == null) {
+                    q = new ArrayDeque<>();
+                    idle.put(channel.getEngineName(), q);
+                }
+                if (q.size() < maxIdle) {
+                    q.addFirst(channel);
+                    return;
+                }
+            }
+        }
+        channel.close();
+    }
+
+    private boolean isUsable(ShellChannel channel) {
+        if (channel.isBroken())
+            return false;
+        final long idleTime = System.currentTimeMillis() - channel.getLastUsed();
+        if (idleTime < validatePeriod)
+            return true;
+        try {
+            return channel.run("true", new OutputBuffer(20), connectTimeout) == 0;
+        } catch(Exception ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Close all the idle channels.
+     */
+    @Override
+    public void close() {
+        final List<ShellChannel> temp = new ArrayList<>();
+        synchronized(this) {
+            closed = true;
+            for (Deque<ShellChannel> q : idle.values())
+                temp.addAll(q);
+            idle.clear();
+        }
+        for (ShellChannel channel : temp)
+            channel.close();
+    }
+
+}
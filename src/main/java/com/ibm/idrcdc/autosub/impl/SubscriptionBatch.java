@@ -0,0 +1,197 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2020 All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import com.ibm.idrcdc.autosub.config.*;
+
+/**
+ * Runs the same action for a set of subscriptions, several at once,
+ * each action in its own Access Server session.
+ * When no extra session can be opened, the actions run in the main
+ * session of the caller, if provided, one at a time.
+ * The number of actions running at the same time against a single
+ * target datastore is limited, to avoid overloading the apply side.
+ * @author zinal
+ */
+public class SubscriptionBatch {
+
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(SubscriptionBatch.class);
+
+    /**
+     * Action executed for a single subscription.
+     */
+    public static interface Action {
+
+        /**
+         * Run the action.
+         * @param script Access Server session
+         * @param subName Subscription name
+         * @param targetName Target datastore name
+         * @throws Exception on failure
+         */
+        void apply(Script script, String subName, String targetName)
+                throws Exception;
+    }
+
+    private final String name;
+    private final Supplier<Script> scripts;
+    private final Script main;
+    private final int maxThreads;
+    private final int maxPerTarget;
+
+    /**
+     * Create the batch runner.
+     * @param name Batch name, used for the thread names
+     * @param scripts Source of Access Server sessions.
+     *        May return null if the connection cannot be established.
+     * @param maxThreads Maximum number of actions running at once
+     * @param maxPerTarget Maximum number of actions running at once
+     *        for a single target datastore
+     */
+    public SubscriptionBatch(String name, Supplier<Script> scripts,
+            int maxThreads, int maxPerTarget) {
+        this(name, scripts, null, maxThreads, maxPerTarget);
+    }
+
+    /**
+     * Create the batch runner.
+     * @param name Batch name, used for the thread names
+     * @param scripts Source of Access Server sessions.
+     *        May return null if the connection cannot be established.
+     * @param main Main session of the caller, used when no extra session
+     *        can be obtained, or null
+     * @param maxThreads Maximum number of actions running at once
+     * @param maxPerTarget Maximum number of actions running at once
+     *        for a single target datastore
+     */
+    public SubscriptionBatch(String name, Supplier<Script> scripts, Script main,
+            int maxThreads, int maxPerTarget) {
+        this.name = name;
+        this.scripts = scripts;
+        this.main = main;
+        this.maxThreads = Math.max(1, maxThreads);
+        this.maxPerTarget = Math.max(1, maxPerTarget);
+    }
+
+    /**
+     * Run the action for all subscriptions, and wait for completion.
+     * @param subs Subscription name -> target datastore name
+     * @param action Action to be executed
+     * @return Failed subscription name -> failure reason,
+     *         in the order of completion
+     */
+    public Map<String, Exception> run(Map<String, String> subs, Action action) {
+        final Map<String, Exception> failures = new LinkedHashMap<>();
+        if (subs.isEmpty())
+            return failures;
+        final int threads = Math.min(maxThreads, subs.size());
+        // Actions log to the recovery report of the calling thread
+        final RecoveryReport report = RecoveryReport.current();
+        final List<Map.Entry<String, String>> waiting = new ArrayList<>(subs.entrySet());
+        final Map<String, Integer> perTarget = new HashMap<>();
+        final ExecutorService pool = Executors.newFixedThreadPool(threads,
+                new DaemonThreadFactory(name));
+        try {
+            final CompletionService<Outcome> cs = new ExecutorCompletionService<>(pool);
+            int running = 0;
+            while (!waiting.isEmpty() || running > 0) {
+                // Submit the actions for the targets below the limit
+                final Iterator<Map.Entry<String, String>> it = waiting.iterator();
+                while (it.hasNext() && running < threads) {
+                    final Map.Entry<String, String> sub = it.next();
+                    final String targetKey = Misc.nameKey(sub.getValue());
+                    if (perTarget.getOrDefault(targetKey, 0) >= maxPerTarget)
+                        continue;
+                    it.remove();
+                    perTarget.merge(targetKey, 1, Integer::sum);
+                    cs.submit(() -> execute(report, action, sub.getKey(), sub.getValue()));
+                    ++running;
+                }
+                // Wait for any action to complete
+                final Outcome outcome = cs.take().get();
+                --running;
+                perTarget.merge(Misc.nameKey(outcome.targetName), -1, Integer::sum);
+                if (outcome.failure != null)
+                    failures.put(outcome.subName, outcome.failure);
+            }
+        } catch(InterruptedException ix) {
+            Thread.currentThread().interrupt();
+            for (Map.Entry<String, String> sub : waiting)
+                failures.put(sub.getKey(), ix);
+        } catch(ExecutionException ex) {
+            // Not expected, as execute() catches everything
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return failures;
+    }
+
+    private Outcome execute(RecoveryReport report, Action action,
+            String subName, String targetName) {
+        RecoveryReport.enableBuffered(report);
+        try (Script script = scripts.get()) {
+            if (script != null) {
+                action.apply(script, subName, targetName);
+            } else if (main != null && !main.isBroken()) {
+                // The main session serves one action at a time
+                synchronized(main) {
+                    action.apply(main, subName, targetName);
+                }
+            } else {
+                throw new Exception("No connection to the Access Server");
+            }
+            return new Outcome(subName, targetName, null);
+        } catch(Exception ex) {
+            LOG.debug("Action failed for subscription {}", subName, ex);
+            return new Outcome(subName, targetName, ex);
+        } finally {
+            RecoveryReport.disable();
+        }
+    }
+
+    private static final class Outcome {
+        final String subName;
+        final String targetName;
+        final Exception failure;
+
+        Outcome(String subName, String targetName, Exception failure) {
+            this.subName = subName;
+            this.targetName = targetName;
+            this.failure = failure;
+        }
+    }
+
+}
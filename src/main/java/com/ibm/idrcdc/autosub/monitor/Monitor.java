@@ -22,6 +22,8 @@
 package com.ibm.idrcdc.autosub.monitor;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +43,8 @@ public class Monitor {
     private final AsSubscription subscription;
     private final PerEngine source;
     private final PerEngine target;
+    // source group tracking the pending monitors, null if not grouped
+    private PerSource owner;
 
     private boolean enabled;    // correct configuration (checked on startup)
     private boolean known;      // does subscription exist?
@@ -48,6 +52,10 @@ public class Monitor {
 
     // all replicated source tables
     private final List<String> sourceTables = new ArrayList<>();
+    // time when the list of replicated source tables was grabbed, 0 if unknown
+    private long sourceTablesTime = 0L;
+    // incremented on each change of the list of replicated source tables
+    private int sourceTablesVersion = 0;
     // altered source tables
     private final List<String> alteredTables = new ArrayList<>();
     // bookmark retrieved from target
@@ -57,6 +65,11 @@ public class Monitor {
     // time of the last failure
     private long failureTime;
 
+    // Results of the subscription event log scan, reused in the later checks.
+    private String eventMark;   // signature of the newest event already scanned
+    private String eventId;     // ID of the oldest altered table event, or null
+    private String eventText;   // text of that event
+
     // Message suppression flags, to avoid endless duplicates in the log.
     private boolean suppressMissing;  // for "Missing..." message
     private boolean suppressStopped;  // for "Stopped..." message
@@ -97,6 +110,38 @@ public class Monitor {
         return target;
     }
 
+    /**
+     * @return Source group tracking this monitor, or null
+     */
+    PerSource getOwner() {
+        return owner;
+    }
+
+    /**
+     * Bind the monitor to the source group, which tracks
+     * the pending monitors and their altered tables.
+     * @param owner Source group
+     */
+    void setOwner(PerSource owner) {
+        if (this.owner != null && isRepairNeeded())
+            this.owner.removePending(this);
+        this.owner = owner;
+        if (owner != null && isRepairNeeded())
+            owner.addPending(this);
+    }
+
+    // Should be called before any change of the repair mode or altered tables.
+    private void beforeChange() {
+        if (owner != null && isRepairNeeded())
+            owner.removePending(this);
+    }
+
+    // Should be called after any change of the repair mode or altered tables.
+    private void afterChange() {
+        if (owner != null && isRepairNeeded())
+            owner.addPending(this);
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -118,7 +163,9 @@ public class Monitor {
     }
 
     public void setRepair(RepairMode repair) {
+        beforeChange();
         this.repair = repair;
+        afterChange();
     }
 
     public boolean isRepairNeeded() {
@@ -126,7 +173,17 @@ public class Monitor {
     }
 
     public List<String> getAlteredTables() {
-        return alteredTables;
+        return Collections.unmodifiableList(alteredTables);
+    }
+
+    /**
+     * Add the table to the list of altered tables for this subscription.
+     * @param tableName Altered table name
+     */
+    public void addAlteredTable(String tableName) {
+        beforeChange();
+        alteredTables.add(tableName);
+        afterChange();
     }
 
     /**
@@ -138,17 +195,59 @@ public class Monitor {
         if (alteredTables.isEmpty() || allowed.isEmpty()
                 || allowed.containsAll(alteredTables))
             return;
+        beforeChange();
         List<String> temp = new ArrayList<>(alteredTables);
         alteredTables.clear();
         for (String v : temp)
             if (allowed.contains(v))
                 alteredTables.add(v);
+        afterChange();
     }
 
     public List<String> getSourceTables() {
         return sourceTables;
     }
 
+    /**
+     * Save the list of replicated source tables, as grabbed from
+     * the subscription's table mappings.
+     * @param tables Source table names
+     */
+    public void setSourceTables(Collection<String> tables) {
+        sourceTables.clear();
+        sourceTables.addAll(tables);
+        sourceTablesTime = System.currentTimeMillis();
+        ++sourceTablesVersion;
+    }
+
+    /**
+     * @return Version of the list of replicated source tables,
+     *   changed each time the list is updated.
+     */
+    public int getSourceTablesVersion() {
+        return sourceTablesVersion;
+    }
+
+    /**
+     * Check whether the cached list of replicated source tables can be used.
+     * @param now Current time
+     * @param ttl Maximum age of the cached list, 0 to disable the caching
+     * @return true, if the cached list is still valid, false otherwise
+     */
+    public boolean isSourceTablesValid(long now, long ttl) {
+        if (sourceTablesTime == 0L || ttl <= 0L)
+            return false;
+        return (now - sourceTablesTime) < ttl;
+    }
+
+    /**
+     * Drop the cached list of replicated source tables,
+     * to be re-read on the next use.
+     */
+    public void invalidateSourceTables() {
+        sourceTablesTime = 0L;
+    }
+
     public String getBookmark() {
         return bookmark;
     }
@@ -173,6 +272,49 @@ public class Monitor {
         this.failureTime = failureTime;
     }
 
+    /**
+     * @return Signature of the newest subscription event already scanned,
+     *   or null if the events were not scanned yet.
+     */
+    public String getEventMark() {
+        return eventMark;
+    }
+
+    /**
+     * @return ID of the oldest altered table event since the subscription
+     *   start, as found by the event scan, or null if none was found.
+     */
+    public String getEventId() {
+        return eventId;
+    }
+
+    /**
+     * @return Text of the event referenced by {@link #getEventId()}
+     */
+    public String getEventText() {
+        return eventText;
+    }
+
+    /**
+     * Save the results of the subscription event log scan.
+     * @param mark Signature of the newest event scanned
+     * @param id ID of the altered table event found, or null
+     * @param text Text of the altered table event found, or null
+     */
+    public void setEventScan(String mark, String id, String text) {
+        this.eventMark = mark;
+        this.eventId = id;
+        this.eventText = text;
+    }
+
+    /**
+     * Move the newest scanned event mark, keeping the event found.
+     * @param mark Signature of the newest event scanned
+     */
+    public void setEventMark(String mark) {
+        this.eventMark = mark;
+    }
+
     @Override
     public String toString() {
         return subscription.getName();
@@ -184,6 +326,7 @@ public class Monitor {
      * @param failureTime Time of failure of the subscription recovery attempt.
      */
     public void markRepairFailed(long failureTime) {
+        beforeChange();
         this.failureTime = failureTime;
         this.repair = RepairMode.Disabled;
     }
@@ -193,10 +336,10 @@ public class Monitor {
      * Used by the PendingChecker.
      */
     public void clearSubFlags() {
+        beforeChange();
         known = false; // the subscription will become known if found
         repair = RepairMode.Disabled; // will be reset if failed and repairable
         alteredTables.clear();
-        sourceTables.clear();
         bookmark = null;
     }
 
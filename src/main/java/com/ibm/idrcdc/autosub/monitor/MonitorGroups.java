@@ -22,9 +22,13 @@
 package com.ibm.idrcdc.autosub.monitor;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import com.ibm.idrcdc.autosub.config.*;
 
 /**
@@ -33,55 +37,158 @@ import com.ibm.idrcdc.autosub.config.*;
  */
 public class MonitorGroups {
 
+    private static final org.slf4j.Logger LOG =
+            org.slf4j.LoggerFactory.getLogger(MonitorGroups.class);
+
     private final AsConfig config;
     private final Map<String, PerEngine> engines = new HashMap<>();
     private final List<PerSource> data = new ArrayList<>();
+    // source engine name key -> source group
+    private final Map<String, PerSource> sources = new HashMap<>();
 
     /**
      * Build the monitor groups based on the configuration.
      * @param config Configuration
      */
     public MonitorGroups(AsConfig config) {
+        this(config, null);
+    }
+
+    /**
+     * Build the monitor groups based on the new configuration,
+     * keeping the runtime state of the unchanged objects
+     * from the previous monitor groups.
+     * Engines with the same configuration, subscriptions with the same
+     * configuration and engines, and the source groups with the same
+     * set of subscriptions are moved over as is.
+     * Changed and added objects are created anew, and need the validation.
+     * @param config Configuration
+     * @param previous Monitor groups for the previous configuration, or null
+     */
+    public MonitorGroups(AsConfig config, MonitorGroups previous) {
         this.config = config;
         for (AsEngine engine : config.getEngines().values()) {
-            engines.put(engine.getName(), new PerEngine(engine));
+            PerEngine pe = (previous==null) ? null : previous.engines.get(engine.getName());
+            if (pe==null || !pe.getEngine().equals(engine))
+                pe = new PerEngine(engine);
+            engines.put(engine.getName(), pe);
         }
+        // source name -> target name -> subscriptions, in the configuration order
+        final Map<String, Map<String, List<AsSubscription>>> layout = new LinkedHashMap<>();
         for (AsSubscription as : config.getSubscriptions()) {
             // vars to hold the per-source and per-target engine refs
             PerEngine sourceEngine = engines.get(as.getSource().getName());
-            PerEngine targetEngine = engines.get(as.getTarget().getName());;
+            PerEngine targetEngine = engines.get(as.getTarget().getName());
             if (sourceEngine==null || targetEngine==null)
                 throw new IllegalStateException("Illegal config for sub " + as);
-            // find the existing source group
-            PerSource ps = null;
-            for (PerSource cur : data) {
-                if (cur.getSource().getEngine() == as.getSource()) {
-                    ps = cur;
-                    break;
-                }
+            layout.computeIfAbsent(sourceEngine.getName(), k -> new LinkedHashMap<>())
+                    .computeIfAbsent(targetEngine.getName(), k -> new ArrayList<>())
+                    .add(as);
+        }
+        // source + subscription name key -> monitor, for the previous configuration
+        final Map<String, Monitor> oldMonitors = new HashMap<>();
+        if (previous!=null) {
+            for (PerSource ps : previous.data) {
+                for (Monitor m : ps.allMonitors())
+                    oldMonitors.put(monitorKey(ps.getName(),
+                            m.getSubscription().getName()), m);
             }
-            // make new source group if one not found
-            if (ps==null) {
-                ps = new PerSource(sourceEngine);
-                data.add(ps);
+        }
+        final Set<Monitor> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        int keptSources = 0;
+        for (Map.Entry<String, Map<String, List<AsSubscription>>> me : layout.entrySet()) {
+            PerSource ps = (previous==null) ? null : previous.findSource(me.getKey());
+            if (ps!=null && isSameLayout(ps, me.getValue())) {
+                // Engines may get enabled or disabled by the validation
+                ps.getStates().reset();
+                ++keptSources;
+            } else {
+                ps = buildSource(me.getKey(), me.getValue(), oldMonitors);
             }
-            // find the existing target group
-            PerTarget pst = null;
-            for (PerTarget cur : ps.getTargets()) {
-                if (cur.getTarget().getEngine() == as.getTarget()) {
-                    pst = cur;
-                    break;
-                }
+            kept.addAll(ps.allMonitors());
+            data.add(ps);
+            sources.put(Misc.nameKey(ps.getName()), ps);
+        }
+        if (previous!=null)
+            logReload(oldMonitors, kept, keptSources);
+    }
+
+    /**
+     * Build the new source group, reusing the unchanged monitors.
+     * @param name Source engine name
+     * @param targets Target name -> subscriptions
+     * @param oldMonitors Monitors of the previous configuration,
+     *   by source and subscription name
+     * @return Source group
+     */
+    private PerSource buildSource(String name, Map<String, List<AsSubscription>> targets,
+            Map<String, Monitor> oldMonitors) {
+        final PerEngine sourceEngine = engines.get(name);
+        final PerSource ps = new PerSource(sourceEngine);
+        for (Map.Entry<String, List<AsSubscription>> me : targets.entrySet()) {
+            final PerEngine targetEngine = engines.get(me.getKey());
+            final PerTarget pst = new PerTarget(targetEngine);
+            for (AsSubscription as : me.getValue()) {
+                Monitor m = oldMonitors.get(monitorKey(name, as.getName()));
+                if (m==null || !isSameMonitor(m, as, sourceEngine, targetEngine))
+                    m = new Monitor(as, sourceEngine, targetEngine);
+                pst.addMonitor(m);
+            }
+            ps.addTarget(pst);
+        }
+        return ps;
+    }
+
+    private boolean isSameLayout(PerSource ps, Map<String, List<AsSubscription>> targets) {
+        if (ps.getSource() != engines.get(ps.getName())
+                || ps.getTargets().size() != targets.size())
+            return false;
+        int index = 0;
+        for (Map.Entry<String, List<AsSubscription>> me : targets.entrySet()) {
+            final PerTarget pst = ps.getTargets().get(index++);
+            final PerEngine targetEngine = engines.get(me.getKey());
+            if (pst.getTarget() != targetEngine
+                    || pst.getMonitors().size() != me.getValue().size())
+                return false;
+            for (int i = 0; i < me.getValue().size(); ++i) {
+                if (! isSameMonitor(pst.getMonitors().get(i), me.getValue().get(i),
+                        ps.getSource(), targetEngine))
+                    return false;
             }
-            // make new target group if one not found
-            if (pst==null) {
-                pst = new PerTarget(targetEngine);
-                ps.getTargets().add(pst);
+        }
+        return true;
+    }
+
+    private static String monitorKey(String source, String subname) {
+        return Misc.nameKey(source) + "\u0000" + Misc.nameKey(subname);
+    }
+
+    private static boolean isSameMonitor(Monitor m, AsSubscription as,
+            PerEngine sourceEngine, PerEngine targetEngine) {
+        return m.getSource() == sourceEngine
+                && m.getTarget() == targetEngine
+                && m.getSubscription().equals(as);
+    }
+
+    private void logReload(Map<String, Monitor> oldMonitors, Set<Monitor> kept,
+            int keptSources) {
+        int retired = 0;
+        for (Monitor m : oldMonitors.values()) {
+            if (! kept.contains(m)) {
+                ++retired;
+                LOG.info("Retired monitoring for subscription {}",
+                        m.getSubscription().getName());
             }
-            // add the new monitor to the target group
-            Monitor m = new Monitor(as, sourceEngine, targetEngine);
-            pst.getMonitors().add(m);
         }
+        int keptMonitors = 0;
+        for (Monitor m : kept) {
+            if (oldMonitors.get(monitorKey(m.getSource().getName(),
+                    m.getSubscription().getName())) == m)
+                ++keptMonitors;
+        }
+        LOG.info("Configuration reloaded: {} of {} subscription(s) and {} of {} "
+                + "source datastore(s) unchanged, {} subscription(s) retired.",
+                keptMonitors, kept.size(), keptSources, data.size(), retired);
     }
 
     public AsConfig getConfig() {
@@ -96,10 +203,20 @@ public class MonitorGroups {
         return data;
     }
 
+    /**
+     * Find the source group by source datastore name, ignoring the case.
+     * @param name Source datastore name
+     * @return Source group, or null if not found
+     */
+    public PerSource findSource(String name) {
+        return sources.get(Misc.nameKey(name));
+    }
+
     public boolean isEngineUsed(PerEngine engine) {
         if (engine==null)
             return false;
-        return config.isEngineUsed(engine.getEngine());
+        // Engines kept over the reload refer to the previous configuration
+        return config.isEngineUsed(engine.getName());
     }
 
 }
@@ -34,9 +34,10 @@ public class PerEngine {
     private final AsEngine engine;
     private boolean enabled;
 
-    private String engineVersion = null;
-    private String engineType = null;
-    private boolean ddlAware;
+    // written by the background probe, see copyProbeResults()
+    private volatile String engineVersion = null;
+    private volatile String engineType = null;
+    private volatile boolean ddlAware;
 
     private String pathSeparator = null;
     private String cmdVersionCache = null;
@@ -101,6 +102,21 @@ public class PerEngine {
     public boolean isDdlAware() {
         return ddlAware;
     }
+
+    public void setDdlAware(boolean ddlAware) {
+        this.ddlAware = ddlAware;
+    }
+
+    /**
+     * Copy the probe results (engine type, version and DDL awareness)
+     * from another instance of the same engine.
+     * @param other Engine probed successfully
+     */
+    public void copyProbeResults(PerEngine other) {
+        this.engineType = other.engineType;
+        this.engineVersion = other.engineVersion;
+        this.ddlAware = other.ddlAware;
+    }
     
     private StringBuilder startCommand(String command) {
         return new StringBuilder()
@@ -222,6 +238,28 @@ public class PerEngine {
         return command;
     }
 
+    /**
+     * Extract the remote part of the command, to be run through
+     * the persistent remote shell channel.
+     * Only the commands starting with the configured remote shell
+     * command can be run that way.
+     * @param command Full command text
+     * @return Remote part of the command, or null if the command
+     *   must be run as a separate process
+     */
+    public String getChannelCommand(String command) {
+        if (engine.getTransport() != TransportType.Channel || command == null)
+            return null;
+        final String rsh = engine.getRemoteExec();
+        if (StringUtils.isBlank(rsh))
+            return null;
+        final String prefix = rsh + " ";
+        if (! command.startsWith(prefix))
+            return null;
+        final String remote = command.substring(prefix.length()).trim();
+        return remote.isEmpty() ? null : remote;
+    }
+
     @Override
     public String toString() {
         return engine.getName();
@@ -22,9 +22,12 @@
 package com.ibm.idrcdc.autosub.monitor;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import com.ibm.idrcdc.autosub.config.*;
 
@@ -39,7 +42,17 @@ public class PerSource {
 
     private final PerEngine source;
     private final List<PerTarget> targets = new ArrayList<>();
+    // target name key -> per-target group
+    private final Map<String, PerTarget> targetIndex = new HashMap<>();
     private boolean enabled;
+    // replicated tables -> subscriptions, built on first use
+    private TableIndex tableIndex = null;
+    // subscription states from the previous check cycle
+    private final SubscriptionStates states = new SubscriptionStates(this);
+    // positions of the monitors waiting for recovery, in the table index
+    private final BitSet pending = new BitSet();
+    // altered tables of the pending monitors -> number of pending monitors
+    private final Map<String, Integer> altered = new HashMap<>();
 
     // Message suppression flags, to avoid endless duplicates in the log.
     private boolean suppressCheckErrors = false; // Error checking state for subscriptions ...
@@ -62,7 +75,18 @@ public class PerSource {
     }
 
     public List<PerTarget> getTargets() {
-        return targets;
+        return Collections.unmodifiableList(targets);
+    }
+
+    /**
+     * Add the per-target group of monitors to this source.
+     * @param pst Per-target group
+     */
+    public void addTarget(PerTarget pst) {
+        targets.add(pst);
+        targetIndex.put(Misc.nameKey(pst.getTarget().getName()), pst);
+        monitorsChanged();
+        pst.setOwner(this);
     }
 
     public boolean isEnabled() {
@@ -107,11 +131,7 @@ public class PerSource {
      * @return Per-target group object, or null if not found
      */
     public PerTarget findTarget(String name) {
-        for (PerTarget pst : targets) {
-            if (name.equalsIgnoreCase(pst.getTarget().getName()))
-                return pst;
-        }
-        return null;
+        return targetIndex.get(Misc.nameKey(name));
     }
 
     /**
@@ -130,16 +150,37 @@ public class PerSource {
         return v;
     }
 
-   /**
+    /**
+     * Index of replicated tables to subscriptions for this source datastore.
+     * Built on the first use, and re-built when the monitors are added.
+     * Call {@link TableIndex#refresh()} to catch up with the table list changes.
+     * @return Table index object
+     */
+    public TableIndex getTableIndex() {
+        if (tableIndex == null)
+            tableIndex = new TableIndex(allMonitors());
+        return tableIndex;
+    }
+
+    /**
+     * @return Subscription states from the previous check cycle
+     */
+    public SubscriptionStates getStates() {
+        return states;
+    }
+
+    /**
      * Return the list of pending monitored subscriptions for this source datastore.
      * @return List of pending subscription monitors.
      */
     public List<Monitor> pendingMonitors() {
-        final List<Monitor> v = new ArrayList<>();
-        for (PerTarget pst : targets) {
-            for (Monitor m : pst.getMonitors())
-                if (m.isRepairNeeded())
-                    v.add(m);
+        if (pending.isEmpty())
+            return Collections.emptyList();
+        final TableIndex index = getTableIndex();
+        final List<Monitor> v = new ArrayList<>(pending.cardinality());
+        for (int pos = pending.nextSetBit(0); pos >= 0;
+                pos = pending.nextSetBit(pos + 1)) {
+            v.add(index.getMonitor(pos));
         }
         return v;
     }
@@ -149,13 +190,56 @@ public class PerSource {
      * @return Set of altered table names.
      */
     public Set<String> alteredTables() {
-        final Set<String> v = new HashSet<>();
-        for (PerTarget pst : targets) {
-            for (Monitor m : pst.getMonitors())
-                if (m.isRepairNeeded())
-                    v.addAll(m.getAlteredTables());
+        return new HashSet<>(altered.keySet());
+    }
+
+    /**
+     * Drop the table index after the set of monitors has changed,
+     * and re-register the pending monitors in the new index.
+     * Called before the new monitors are bound to this group.
+     */
+    void monitorsChanged() {
+        if (tableIndex == null)
+            return;
+        tableIndex = null;
+        pending.clear();
+        altered.clear();
+        for (Monitor m : allMonitors()) {
+            if (m.getOwner() == this && m.isRepairNeeded())
+                addPending(m);
+        }
+    }
+
+    /**
+     * Register the monitor which became pending for recovery,
+     * or had its altered tables changed while pending.
+     * Called by the monitor itself.
+     * @param m Monitor waiting for recovery
+     */
+    void addPending(Monitor m) {
+        final int pos = getTableIndex().getPosition(m);
+        if (pos < 0)
+            return;
+        pending.set(pos);
+        for (String tableName : m.getAlteredTables())
+            altered.merge(tableName, 1, Integer::sum);
+    }
+
+    /**
+     * Unregister the pending monitor, before its recovery state
+     * or its altered tables are changed.
+     * Called by the monitor itself.
+     * @param m Monitor waiting for recovery
+     */
+    void removePending(Monitor m) {
+        final int pos = getTableIndex().getPosition(m);
+        if (pos < 0 || !pending.get(pos))
+            return;
+        pending.clear(pos);
+        for (String tableName : m.getAlteredTables()) {
+            altered.computeIfPresent(tableName,
+                    (k, count) -> (count > 1) ? count - 1 : null);
         }
-        return v;
     }
 
     public void reportCheckError(Throwable ex) {
@@ -22,7 +22,11 @@
 package com.ibm.idrcdc.autosub.monitor;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import com.ibm.idrcdc.autosub.config.Misc;
 
 /**
  * Monitors for one target datastore
@@ -33,6 +37,9 @@ public class PerTarget {
 
     private final PerEngine target;
     private final List<Monitor> monitors = new ArrayList<>();
+    // subscription name key -> monitor
+    private final Map<String, Monitor> monitorIndex = new HashMap<>();
+    private PerSource owner;
     private boolean enabled;
 
     public PerTarget(PerEngine target) {
@@ -45,7 +52,31 @@ public class PerTarget {
     }
 
     public List<Monitor> getMonitors() {
-        return monitors;
+        return Collections.unmodifiableList(monitors);
+    }
+
+    /**
+     * Add the monitor to this group.
+     * @param m Monitor to be added
+     */
+    public void addMonitor(Monitor m) {
+        monitors.add(m);
+        monitorIndex.put(Misc.nameKey(m.getSubscription().getName()), m);
+        if (owner != null) {
+            owner.monitorsChanged();
+            m.setOwner(owner);
+        }
+    }
+
+    /**
+     * Bind this group and its monitors to the source group.
+     * Used by {@link PerSource#addTarget(PerTarget)}.
+     * @param owner Source group
+     */
+    void setOwner(PerSource owner) {
+        this.owner = owner;
+        for (Monitor m : monitors)
+            m.setOwner(owner);
     }
 
     public boolean isEnabled() {
@@ -76,11 +107,7 @@ public class PerTarget {
      * @return Monitor object, or null if not found
      */
     public Monitor findMonitor(String name) {
-        for (Monitor m : monitors) {
-            if (name.equalsIgnoreCase(m.getSubscription().getName()))
-                return m;
-        }
-        return null;
+        return monitorIndex.get(Misc.nameKey(name));
     }
 
 }
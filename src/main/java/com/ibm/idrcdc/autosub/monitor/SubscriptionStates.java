@@ -0,0 +1,202 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2020 All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.monitor;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Subscription states of one source datastore as seen in the previous
+ * check cycle, used to detect the state changes.
+ * Each MONITOR REPLICATION row is remembered along with its monitor,
+ * so the unchanged rows need neither lookups nor re-processing.
+ * @author zinal
+ */
+public class SubscriptionStates {
+
+    private final PerSource origin;
+    // target + subscription name -> row data
+    private final Map<String, Entry> entries = new HashMap<>();
+    // positions of monitors seen in the current cycle
+    private final BitSet seen = new BitSet();
+    private int cycle = 0;
+    private int changedCount = 0;
+    private int rowCount = 0;
+
+    public SubscriptionStates(PerSource origin) {
+        this.origin = origin;
+    }
+
+    /**
+     * Begin the new check cycle.
+     */
+    public void startCycle() {
+        ++cycle;
+        seen.clear();
+        changedCount = 0;
+        rowCount = 0;
+    }
+
+    /**
+     * Forget all the rows, so that the monitors are looked up
+     * and the states are processed again in the next cycle.
+     * Needed when the datastores or subscriptions get enabled
+     * or disabled, as the cached rows refer to the monitors
+     * resolved under the previous settings.
+     */
+    public void reset() {
+        entries.clear();
+        seen.clear();
+    }
+
+    /**
+     * Register the subscription state in the current cycle.
+     * @param target Target datastore name
+     * @param subname Subscription name
+     * @param state Subscription state
+     * @return Row data, with the changed flag set if the state differs
+     *   from the previous cycle
+     */
+    public Entry update(String target, String subname, String state) {
+        final String key = target + "\u0000" + subname;
+        Entry e = entries.get(key);
+        if (e == null) {
+            e = new Entry(findMonitor(target, subname));
+            entries.put(key, e);
+        }
+        e.changed = (e.state == null) || !e.state.equals(state);
+        e.state = state;
+        e.cycle = cycle;
+        ++rowCount;
+        if (e.changed)
+            ++changedCount;
+        if (e.monitor != null) {
+            final int pos = origin.getTableIndex().getPosition(e.monitor);
+            if (pos >= 0)
+                seen.set(pos);
+        }
+        return e;
+    }
+
+    /**
+     * Complete the check cycle. Rows not seen are forgotten,
+     * and the flags of the monitors not seen are cleared.
+     */
+    public void finishCycle() {
+        final Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().cycle != cycle)
+                it.remove();
+        }
+        final List<Monitor> monitors = origin.allMonitors();
+        for (int pos = 0; pos < monitors.size(); ++pos) {
+            if (! seen.get(pos))
+                monitors.get(pos).clearSubFlags();
+        }
+    }
+
+    /**
+     * @return Number of rows changed in the current (or last) cycle
+     */
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    /**
+     * @return Number of rows in the current (or last) cycle
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Collect the states of the monitored subscriptions, as of the last cycle.
+     * @param states Monitor -> subscription state, updated in place
+     */
+    public void collectStates(Map<Monitor, String> states) {
+        for (Entry e : entries.values()) {
+            if (e.monitor != null && e.state != null)
+                states.put(e.monitor, e.state);
+        }
+    }
+
+    private Monitor findMonitor(String target, String subname) {
+        PerTarget pst = origin.findTarget(target);
+        if (pst==null)
+            return null; // Skip the unknown targets
+        Monitor m = pst.findMonitor(subname);
+        if (m==null) // Skip the unmonitored subscription
+            return null;
+        if (! m.getTarget().isEnabled())
+            return null; // The target datastore is not enabled
+        return m;
+    }
+
+    /**
+     * Subscription state row.
+     */
+    public static final class Entry {
+
+        private final Monitor monitor;
+        private String state = null;
+        private boolean changed = true;
+        private int cycle = 0;
+
+        private Entry(Monitor monitor) {
+            this.monitor = monitor;
+        }
+
+        /**
+         * @return Monitor for the subscription, or null if the subscription
+         *   is not monitored
+         */
+        public Monitor getMonitor() {
+            return monitor;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        /**
+         * @return true, if the state has changed since the previous cycle
+         */
+        public boolean isChanged() {
+            return changed;
+        }
+
+        /**
+         * Failed subscriptions are always processed, as their repair
+         * may be needed without any state change (e.g. after the pause
+         * following the failed repair attempt).
+         * @return true, if the row has to be processed in this cycle
+         */
+        public boolean isProcessingNeeded() {
+            return changed || "Failed".equalsIgnoreCase(state);
+        }
+
+    }
+
+}
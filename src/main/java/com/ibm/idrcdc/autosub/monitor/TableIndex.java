@@ -0,0 +1,170 @@
+/*
+** ****************************************************************************
+** (c) Copyright IBM Corp. 2020 All rights reserved.
+**
+** The following sample of source code ("Sample") is owned by International
+** Business Machines Corporation or one of its subsidiaries ("IBM") and is
+** copyrighted and licensed, not sold. You may use, copy, modify, and
+** distribute the Sample in any form without payment to IBM.
+**
+** The Sample code is provided to you on an "AS IS" basis, without warranty of
+** any kind. IBM HEREBY EXPRESSLY DISCLAIMS ALL WARRANTIES, EITHER EXPRESS OR
+** IMPLIED, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+** MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE. Some jurisdictions do
+** not allow for the exclusion or limitation of implied warranties, so the above
+** limitations or exclusions may not apply to you. IBM shall not be liable for
+** any damages you suffer as a result of using, copying, modifying or
+** distributing the Sample, even if IBM has been advised of the possibility of
+** such damages.
+**
+** Author:   Maksim Zinal <mzinal@ru.ibm.com>
+ */
+package com.ibm.idrcdc.autosub.monitor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index of the replicated source tables for one source datastore.
+ * Maps each table to the set of subscriptions replicating it.
+ * Subscriptions are identified by their positions in the index,
+ * tables by their interned numeric identifiers.
+ * @author zinal
+ */
+public class TableIndex {
+
+    private static final int[] NO_TABLES = new int[0];
+
+    // monitors by their positions
+    private final List<Monitor> monitors;
+    // monitor -> position
+    private final Map<Monitor, Integer> positions = new IdentityHashMap<>();
+    // canonical table name -> table id
+    private final Map<String, Integer> tableIds = new HashMap<>();
+    // table id -> positions of monitors replicating the table
+    private final List<BitSet> replicators = new ArrayList<>();
+    // position -> table ids indexed for the monitor
+    private final int[][] indexedTables;
+    // position -> version of the monitor's table list which has been indexed
+    private final int[] indexedVersions;
+
+    /**
+     * Create the empty index over the list of monitors.
+     * Table lists are indexed on refresh.
+     * @param monitors All monitors of the source datastore
+     */
+    public TableIndex(List<Monitor> monitors) {
+        this.monitors = new ArrayList<>(monitors);
+        this.indexedTables = new int[monitors.size()][];
+        this.indexedVersions = new int[monitors.size()];
+        for (int pos = 0; pos < this.monitors.size(); ++pos) {
+            positions.put(this.monitors.get(pos), pos);
+            indexedTables[pos] = NO_TABLES;
+            indexedVersions[pos] = -1;
+        }
+    }
+
+    /**
+     * Convert the table name to the form used for the lookups.
+     * @param tableName Table name
+     * @return Canonical table name
+     */
+    public static String canonical(String tableName) {
+        return (tableName==null) ? "" : tableName.trim();
+    }
+
+    /**
+     * Re-index the monitors which have their table lists changed
+     * since the previous refresh.
+     */
+    public void refresh() {
+        for (int pos = 0; pos < monitors.size(); ++pos) {
+            final Monitor m = monitors.get(pos);
+            if (m.getSourceTablesVersion() != indexedVersions[pos])
+                reindex(pos, m);
+        }
+    }
+
+    private void reindex(int pos, Monitor m) {
+        for (int id : indexedTables[pos]) {
+            replicators.get(id).clear(pos);
+        }
+        final List<String> tables = m.getSourceTables();
+        final int[] ids = new int[tables.size()];
+        for (int i = 0; i < ids.length; ++i) {
+            final int id = intern(tables.get(i));
+            replicators.get(id).set(pos);
+            ids[i] = id;
+        }
+        indexedTables[pos] = ids;
+        indexedVersions[pos] = m.getSourceTablesVersion();
+    }
+
+    private int intern(String tableName) {
+        final String key = canonical(tableName);
+        Integer id = tableIds.get(key);
+        if (id == null) {
+            id = replicators.size();
+            replicators.add(new BitSet());
+            tableIds.put(key, id);
+        }
+        return id;
+    }
+
+    /**
+     * @param m Monitor
+     * @return Position of the monitor in the index, or -1 if not indexed
+     */
+    public int getPosition(Monitor m) {
+        final Integer pos = positions.get(m);
+        return (pos==null) ? -1 : pos;
+    }
+
+    /**
+     * @param pos Position of the monitor in the index
+     * @return Monitor at the specified position
+     */
+    public Monitor getMonitor(int pos) {
+        return monitors.get(pos);
+    }
+
+    /**
+     * Build the set of monitor positions.
+     * @param items Monitors to be included
+     * @return Set of positions
+     */
+    public BitSet toBitSet(List<Monitor> items) {
+        final BitSet retval = new BitSet(monitors.size());
+        for (Monitor m : items) {
+            final int pos = getPosition(m);
+            if (pos >= 0)
+                retval.set(pos);
+        }
+        return retval;
+    }
+
+    /**
+     * Find the subscription which replicates the table,
+     * but is not in the specified set of subscriptions
+     * (which normally are stopped on that table).
+     * @param tableName Table name
+     * @param excluded Positions of the subscriptions to be ignored
+     * @return The first locking subscription, or null if there is none
+     */
+    public Monitor findLocker(String tableName, BitSet excluded) {
+        final Integer id = tableIds.get(canonical(tableName));
+        if (id == null)
+            return null;
+        final BitSet r = replicators.get(id);
+        for (int pos = r.nextSetBit(0); pos >= 0; pos = r.nextSetBit(pos + 1)) {
+            if (! excluded.get(pos))
+                return monitors.get(pos);
+        }
+        return null;
+    }
+
+}
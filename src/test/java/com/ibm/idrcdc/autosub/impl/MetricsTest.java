@@ -0,0 +1,96 @@
+/*
+ * AutoSub sample code
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.MBeanAttributeInfo;
+import org.junit.Test;
+import org.junit.Assert;
+
+/**
+ *
+ * @author zinal
+ */
+public class MetricsTest {
+
+    @Test
+    public void testHistogram() {
+        Histogram h = new Histogram();
+        Assert.assertEquals(0L, h.getPercentile(0.5));
+        for (int i = 0; i < 90; ++i)
+            h.record(3L);
+        for (int i = 0; i < 10; ++i)
+            h.record(700L);
+        Assert.assertEquals(100L, h.getCount());
+        Assert.assertEquals(90L * 3L + 10L * 700L, h.getTotal());
+        Assert.assertEquals(700L, h.getMax());
+        Assert.assertEquals(5L, h.getPercentile(0.5));
+        Assert.assertEquals(5L, h.getPercentile(0.9));
+        // Bucket bound 1000 is limited by the maximum
+        Assert.assertEquals(700L, h.getPercentile(0.95));
+        h.record(5000000L);
+        Assert.assertEquals(5000000L, h.getPercentile(1.0));
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        MetricFamily<Histogram> timers = Metrics.timers("test_timer", "kind", "Test timer");
+        Assert.assertSame(timers, Metrics.timers("test_timer", "kind", "Test timer"));
+        timers.get("a.b").record(20L);
+        timers.get("a.b").record(40L);
+        MetricFamilyBean bean = new MetricFamilyBean(timers);
+        Assert.assertEquals(2L, bean.getAttribute("a.b.count"));
+        Assert.assertEquals(40L, bean.getAttribute("a.b.maxMillis"));
+        Assert.assertEquals(25L, bean.getAttribute("a.b.p50Millis"));
+        MBeanAttributeInfo[] attrs = bean.getMBeanInfo().getAttributes();
+        Assert.assertEquals(6, attrs.length);
+
+        MetricFamily<LongAdder> counters = Metrics.counters("test_counter", null, "Test counter");
+        counters.get().add(3L);
+        counters.get("ignored").increment();
+        Assert.assertEquals(4L, new MetricFamilyBean(counters).getAttribute("value"));
+    }
+
+    @Test
+    public void testPrometheus() {
+        MetricFamily<Histogram> timers = Metrics.timers("prom_timer", "kind", "Prom timer");
+        timers.get("x").record(3L);
+        timers.get("x").record(1500L);
+        MetricFamily<LongAdder> counters = Metrics.counters("prom_counter", null, "Prom counter");
+        counters.get().add(5L);
+        PrometheusWriter w = new PrometheusWriter();
+        w.write(timers);
+        w.write(counters);
+        w.sample("custom", 1L, "name", "a\"b");
+        String text = w.toString();
+        Assert.assertTrue(text.contains("# TYPE autosub_prom_timer_seconds histogram\n"));
+        Assert.assertTrue(text.contains("autosub_prom_timer_seconds_bucket{kind=\"x\",le=\"0.002\"} 0\n"));
+        Assert.assertTrue(text.contains("autosub_prom_timer_seconds_bucket{kind=\"x\",le=\"0.005\"} 1\n"));
+        Assert.assertTrue(text.contains("autosub_prom_timer_seconds_bucket{kind=\"x\",le=\"2.5\"} 2\n"));
+        Assert.assertTrue(text.contains("autosub_prom_timer_seconds_bucket{kind=\"x\",le=\"+Inf\"} 2\n"));
+        Assert.assertTrue(text.contains("autosub_prom_timer_seconds_sum{kind=\"x\"} 1.503\n"));
+        Assert.assertTrue(text.contains("autosub_prom_timer_seconds_count{kind=\"x\"} 2\n"));
+        Assert.assertTrue(text.contains("# TYPE autosub_prom_counter_total counter\n"));
+        Assert.assertTrue(text.contains("autosub_prom_counter_total 5\n"));
+        Assert.assertTrue(text.contains("autosub_custom{name=\"a\\\"b\"} 1\n"));
+    }
+
+    @Test
+    public void testVerb() {
+        Assert.assertEquals("monitor replication",
+                CommandClass.verb("monitor replication;"));
+        Assert.assertEquals("select datastore",
+                CommandClass.verb("select datastore name \"SRC1\" context source;"));
+        Assert.assertEquals("show context", CommandClass.verb("  SHOW   Context;"));
+        Assert.assertEquals("connect", CommandClass.verb("connect"));
+        Assert.assertEquals("list datastores", CommandClass.verb("list datastores;"));
+        // unknown verbs are built from the command text
+        Assert.assertEquals("mark capture", CommandClass.verb("Mark\tCAPTURE point;"));
+        Assert.assertEquals("", CommandClass.verb("  ;"));
+        // known verbs are the shared constants
+        Assert.assertSame(CommandClass.verb("SELECT SUBSCRIPTION name \"S1\";"),
+                CommandClass.verb("select subscription name \"S2\";"));
+    }
+
+}
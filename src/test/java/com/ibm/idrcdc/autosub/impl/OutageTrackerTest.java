@@ -0,0 +1,151 @@
+/*
+ * AutoSub sample code
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.Assert;
+import com.ibm.idrcdc.autosub.config.*;
+import com.ibm.idrcdc.autosub.monitor.*;
+
+/**
+ *
+ * @author zinal
+ */
+public class OutageTrackerTest {
+
+    private static OutageHistory.Outage newOutage(String source, String cls,
+            long detected, long duration) {
+        OutageHistory.Outage o = new OutageHistory.Outage();
+        o.source = source;
+        o.target = "DST1";
+        o.subscription = "SUB_" + source;
+        o.failureClass = cls;
+        o.outcome = OutageHistory.OUTCOME_REPAIRED;
+        o.detected = detected;
+        o.repairStart = detected + 10L;
+        o.repairEnd = detected + duration / 2L;
+        o.recovered = detected + duration;
+        return o;
+    }
+
+    @Test
+    public void testHistory() {
+        OutageHistory h = new OutageHistory(4);
+        for (int i = 1; i <= 6; ++i)
+            h.add(newOutage((i % 2 == 0) ? "SRC2" : "SRC1", "9505", 1000L * i, 100L * i));
+        // Only the newest 4 outages are kept
+        Assert.assertEquals(4, h.size());
+        Assert.assertEquals(3000L, h.get(0).detected);
+        Assert.assertEquals(6000L, h.get(3).detected);
+        Map<String, OutageHistory.Stats> bySource = h.timeToRecover(true);
+        Assert.assertEquals(2, bySource.get("SRC1").getCount());
+        Assert.assertEquals(300L, bySource.get("SRC1").getPercentile(0.5));
+        Assert.assertEquals(500L, bySource.get("SRC1").getMax());
+        OutageHistory.Stats byClass = h.timeToRecover(false).get("9505");
+        Assert.assertEquals(4, byClass.getCount());
+        Assert.assertEquals(400L, byClass.getPercentile(0.5));
+        Assert.assertEquals(600L, byClass.getPercentile(0.99));
+        Assert.assertEquals(1800L, byClass.getTotal());
+        Assert.assertEquals(290L, h.repairTime(false).get("9505").getPercentile(0.9));
+        // The copy does not see the later changes
+        OutageHistory copy = new OutageHistory(h);
+        h.add(newOutage("SRC3", "9506", 7000L, 700L));
+        Assert.assertEquals(4, copy.size());
+        Assert.assertEquals(3000L, copy.get(0).detected);
+        Assert.assertNull(copy.timeToRecover(true).get("SRC3"));
+        Assert.assertEquals(1, h.timeToRecover(true).get("SRC3").getCount());
+    }
+
+    @Test
+    public void testTracker() throws Exception {
+        File data = File.createTempFile("autosub", ".xml");
+        File history = new File(data.getPath() + ".outages");
+        try {
+            AsGlobals globals = new AsGlobals();
+            globals.setDataFile(data.getPath());
+            globals.setOutageHistory(100);
+            OutageTracker tracker = OutageTracker.getInstance();
+            tracker.configure(globals);
+
+            AsEngine src = new AsEngine("SRC1", EngineMode.Source);
+            AsEngine dst = new AsEngine("DST1", EngineMode.Target);
+            Monitor m = new Monitor(new AsSubscription("SUB1", src, dst),
+                    new PerEngine(src), new PerEngine(dst));
+            tracker.failed(m, "Failed");
+            tracker.failed(m, "Failed");
+            tracker.classify(m, "9505");
+            tracker.repairStarted(m);
+            tracker.repairEnded(m, true);
+            Assert.assertTrue(tracker.report(null, null, 10).contains("open=1"));
+            tracker.recovered(m);
+            // Recovery without an open outage is ignored
+            tracker.recovered(m);
+
+            String report = tracker.report(null, "sub1", 10);
+            Assert.assertTrue(report.contains("outages completed=1 open=0"));
+            Assert.assertTrue(report.contains("mttr class=9505 count=1"));
+            Assert.assertTrue(report.contains("outage subscription=SUB1 source=SRC1"));
+            Assert.assertTrue(report.contains("outcome=repaired"));
+            Assert.assertFalse(tracker.report("SRC2", null, 10).contains("outage subscription"));
+
+            // The history survives the restart
+            tracker.configure(globals);
+            Assert.assertTrue(tracker.report(null, null, 10)
+                    .contains("outage subscription=SUB1 source=SRC1 target=DST1 class=9505"));
+        } finally {
+            cleanup(history, data);
+        }
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        File data = File.createTempFile("autosub", ".xml");
+        File history = new File(data.getPath() + ".outages");
+        try {
+            AsGlobals globals = new AsGlobals();
+            globals.setDataFile(data.getPath());
+            globals.setOutageHistory(2);
+            OutageTracker tracker = OutageTracker.getInstance();
+            tracker.configure(globals);
+
+            AsEngine src = new AsEngine("SRC1", EngineMode.Source);
+            AsEngine dst = new AsEngine("DST1", EngineMode.Target);
+            Monitor m = new Monitor(new AsSubscription("SUB1", src, dst),
+                    new PerEngine(src), new PerEngine(dst));
+            for (int i = 0; i < 4; ++i) {
+                tracker.failed(m, "Failed");
+                tracker.recovered(m);
+            }
+            Assert.assertEquals(4, Files.readAllLines(history.toPath()).size());
+            // Above twice the capacity the file is re-written from the buffer
+            tracker.failed(m, "Failed");
+            tracker.recovered(m);
+            Assert.assertEquals(2, Files.readAllLines(history.toPath()).size());
+            Assert.assertTrue(tracker.report(null, null, 10).contains("outages completed=2"));
+
+            // Outages of the subscriptions no longer monitored are dropped
+            tracker.failed(m, "Failed");
+            PerSource ps = new PerSource(m.getSource());
+            tracker.retain(Collections.singletonList(ps));
+            Assert.assertTrue(tracker.report(null, null, 10).contains("open=0"));
+            tracker.recovered(m);
+            Assert.assertTrue(tracker.report(null, null, 10).contains("outages completed=2"));
+        } finally {
+            cleanup(history, data);
+        }
+    }
+
+    private static void cleanup(File... files) {
+        AsGlobals disabled = new AsGlobals();
+        disabled.setOutageHistory(0);
+        OutageTracker.getInstance().configure(disabled);
+        for (File f : files)
+            f.delete();
+    }
+
+}
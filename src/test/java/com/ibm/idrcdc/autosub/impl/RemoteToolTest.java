@@ -0,0 +1,75 @@
+/*
+ * AutoSub sample code
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.Assert;
+import com.ibm.idrcdc.autosub.config.*;
+import com.ibm.idrcdc.autosub.monitor.PerEngine;
+
+/**
+ *
+ * @author zinal
+ */
+public class RemoteToolTest {
+
+    private PerEngine newEngine() {
+        AsEngine ae = new AsEngine("SRC1", EngineMode.Source);
+        ae.setEngineInstallDir("/opt/cdc");
+        ae.setInstanceName("wrk1");
+        ae.setTransport(TransportType.Scripted);
+        ae.addScriptedReply(new AsScriptedReply("dmshowversion", 0, 0L,
+                "Product: IBM InfoSphere Data Replication (Oracle)\nVersion: 11.4"));
+        ae.addScriptedReply(new AsScriptedReply("dmreaddtable .* -t \"?S.T1", 0, 0L,
+                "Table ${TABLE} re-added"));
+        ae.addScriptedReply(new AsScriptedReply("dmreaddtable", 3, 0L, null));
+        ae.addScriptedReply(new AsScriptedReply("dmclearstagingstore", 0, 2000L, null));
+        return new PerEngine(ae);
+    }
+
+    @Test
+    public void testScripted() {
+        PerEngine pe = newEngine();
+        Assert.assertEquals("scripted", RemoteTool.transportFor(pe).getName());
+        Assert.assertTrue(RemoteTool.transportFor(pe) == RemoteTool.transportFor(pe));
+
+        StringBuilder output = new StringBuilder();
+        Assert.assertEquals(0, RemoteTool.run(pe, "show-version", pe.cmdVersion(), output));
+        Assert.assertTrue(output.toString().contains("Version: 11.4"));
+
+        Map<String,String> subst = new HashMap<>();
+        subst.put("TABLE", "S.T1");
+        output = new StringBuilder();
+        Assert.assertEquals(0, RemoteTool.run(pe, "readd-table",
+                pe.cmdReAddTable(), subst, output));
+        Assert.assertTrue(output.toString().contains("Table S.T1 re-added"));
+
+        subst.put("TABLE", "S.T2");
+        Assert.assertEquals(3, RemoteTool.run(pe, "readd-table",
+                pe.cmdReAddTable(), subst, null));
+
+        Assert.assertEquals(RemoteTool.CODE_FAILED,
+                RemoteTool.run(pe, "get-events", pe.cmdEvents(), null));
+    }
+
+    @Test
+    public void testScriptedTimeout() {
+        PerEngine pe = newEngine();
+        RemoteTool tool = new RemoteTool(pe, "clear-staging", pe.cmdClear(), null);
+        tool.setTimeout(100L);
+        Assert.assertEquals(RemoteTool.CODE_TIMEOUT, tool.execute());
+    }
+
+    @Test
+    public void testDefaultTransport() {
+        PerEngine pe = new PerEngine(new AsEngine("DST1", EngineMode.Target));
+        Assert.assertEquals("process", RemoteTool.transportFor(pe).getName());
+        Assert.assertEquals("process", RemoteTool.transportFor(null).getName());
+        pe.getEngine().setTransport(TransportType.Channel);
+        Assert.assertEquals("channel", RemoteTool.transportFor(pe).getName());
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * AutoSub sample code
+ */
+package com.ibm.idrcdc.autosub.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.Assert;
+import com.ibm.replication.cdc.scripting.EmbeddedScript;
+import com.ibm.idrcdc.autosub.config.*;
+
+/**
+ *
+ * @author zinal
+ */
+public class SubscriptionBatchTest {
+
+    private static Map<String, String> newSubs(int count) {
+        final Map<String, String> subs = new LinkedHashMap<>();
+        for (int i = 1; i <= count; ++i)
+            subs.put("SUB" + i, (i % 2 == 0) ? "DST1" : "DST2");
+        return subs;
+    }
+
+    @Test
+    public void testMainFallback() {
+        final Script main = new Script(new AsGlobals(), new EmbeddedScript());
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final Set<String> done = ConcurrentHashMap.newKeySet();
+        // The pool cannot open any extra session
+        SubscriptionBatch batch = new SubscriptionBatch("test-batch",
+                () -> null, main, 4, 2);
+        Map<String, Exception> failures = batch.run(newSubs(6), (s, sub, target) -> {
+            Assert.assertSame(main, s);
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            Thread.sleep(10L);
+            active.decrementAndGet();
+            done.add(sub);
+        });
+        Assert.assertTrue(failures.isEmpty());
+        Assert.assertEquals(6, done.size());
+        // The main session is used by one action at a time
+        Assert.assertEquals(1, maxActive.get());
+    }
+
+    @Test
+    public void testNoSession() {
+        SubscriptionBatch batch = new SubscriptionBatch("test-batch",
+                () -> null, 4, 2);
+        Map<String, Exception> failures = batch.run(newSubs(3),
+                (s, sub, target) -> Assert.fail("Must not run without a session"));
+        Assert.assertEquals(3, failures.size());
+        Assert.assertEquals("No connection to the Access Server",
+                failures.get("SUB2").getMessage());
+    }
+
+}
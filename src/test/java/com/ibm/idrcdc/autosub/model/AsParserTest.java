@@ -38,6 +38,21 @@ public class AsParserTest {
             + "  </idrcdc-engine>\n"
             + "</idrcdc-autosub>";
 
+    private static final String XML_TRANSPORT =
+            "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<idrcdc-autosub>\n"
+            + "  <idrcdc-subscription name='SUB1' source='SRC1' target='DST1'/>\n"
+            + "  <idrcdc-engine name='SRC1' mode='Source'>\n"
+            + "    <cdc-transport type='scripted'>\n"
+            + "      <reply match='dmshowversion' delay='10'>Version: 11.4</reply>\n"
+            + "      <reply code='1'/>\n"
+            + "    </cdc-transport>\n"
+            + "  </idrcdc-engine>\n"
+            + "  <idrcdc-engine name='DST1' mode='Target'>\n"
+            + "    <cdc-rsh persistent='true'>ssh cdcuser@host2</cdc-rsh>\n"
+            + "  </idrcdc-engine>\n"
+            + "</idrcdc-autosub>";
+
     public AsParserTest() {
     }
 
@@ -64,4 +79,24 @@ public class AsParserTest {
         Assert.assertEquals(config1, config2);
     }
 
+    @Test
+    public void testTransport() {
+        AsConfig config1 = AsParser.load(new ByteArrayInputStream(
+                XML_TRANSPORT.getBytes(StandardCharsets.UTF_8)));
+        AsEngine src = config1.getEngine("SRC1");
+        Assert.assertEquals(TransportType.Scripted, src.getTransport());
+        Assert.assertEquals(2, src.getScriptedReplies().size());
+        Assert.assertEquals("dmshowversion", src.getScriptedReplies().get(0).getMatch());
+        Assert.assertEquals(10L, src.getScriptedReplies().get(0).getDelay());
+        Assert.assertEquals("Version: 11.4", src.getScriptedReplies().get(0).getOutput());
+        Assert.assertNull(src.getScriptedReplies().get(1).getMatch());
+        Assert.assertEquals(1, src.getScriptedReplies().get(1).getCode());
+        Assert.assertEquals(TransportType.Channel,
+                config1.getEngine("DST1").getTransport());
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AsParser.save(config1, baos);
+        AsConfig config2 = AsParser.load(new ByteArrayInputStream(baos.toByteArray()));
+        Assert.assertEquals(config1, config2);
+    }
+
 }
@@ -0,0 +1,68 @@
+/*
+ * AutoSub sample code
+ */
+package com.ibm.idrcdc.autosub.monitor;
+
+import org.junit.Test;
+import org.junit.Assert;
+import com.ibm.idrcdc.autosub.config.*;
+
+/**
+ *
+ * @author zinal
+ */
+public class MonitorGroupsTest {
+
+    private static AsConfig newConfig(String dstInstance, String... subs) {
+        AsConfig config = new AsConfig();
+        AsEngine src1 = new AsEngine("SRC1", EngineMode.Source);
+        AsEngine src2 = new AsEngine("SRC2", EngineMode.Source);
+        AsEngine dst = new AsEngine("DST1", EngineMode.Target);
+        dst.setInstanceName(dstInstance);
+        config.addEngine(src1);
+        config.addEngine(src2);
+        config.addEngine(dst);
+        for (String sub : subs) {
+            // SUBx.y: subscription x from the source y
+            AsEngine src = sub.endsWith(".2") ? src2 : src1;
+            config.addSubscription(new AsSubscription(sub, src, dst));
+        }
+        return config;
+    }
+
+    @Test
+    public void testReload() {
+        MonitorGroups g1 = new MonitorGroups(newConfig("DS", "A.1", "B.1", "C.2"));
+        Monitor a1 = g1.findSource("SRC1").findMonitor("A.1");
+        Monitor c2 = g1.findSource("SRC2").findMonitor("C.2");
+        a1.setEnabled(true);
+        a1.setFailureTime(12345L);
+        a1.setRepair(RepairMode.Normal);
+        c2.setEnabled(true);
+        PerEngine srcEngine = g1.getEngines().get("SRC1");
+
+        // B.1 removed, D.1 added: SRC1 group rebuilt, SRC2 group kept
+        MonitorGroups g2 = new MonitorGroups(newConfig("DS", "A.1", "C.2", "D.1"), g1);
+        Assert.assertSame(srcEngine, g2.getEngines().get("SRC1"));
+        Assert.assertSame(g1.findSource("SRC2"), g2.findSource("SRC2"));
+        Assert.assertNotSame(g1.findSource("SRC1"), g2.findSource("SRC1"));
+        PerSource ps = g2.findSource("SRC1");
+        Assert.assertSame(a1, ps.findMonitor("A.1"));
+        Assert.assertEquals(12345L, a1.getFailureTime());
+        Assert.assertNull(ps.findMonitor("B.1"));
+        Assert.assertFalse(ps.findMonitor("D.1").isEnabled());
+        // Pending repair moved to the new source group
+        Assert.assertEquals(1, ps.pendingMonitors().size());
+        Assert.assertSame(a1, ps.pendingMonitors().get(0));
+        Assert.assertTrue(g1.findSource("SRC1").pendingMonitors().isEmpty());
+
+        // Changed target engine: all monitors re-created
+        MonitorGroups g3 = new MonitorGroups(newConfig("DS2", "A.1", "C.2", "D.1"), g2);
+        Assert.assertSame(srcEngine, g3.getEngines().get("SRC1"));
+        Assert.assertNotSame(g2.getEngines().get("DST1"), g3.getEngines().get("DST1"));
+        Assert.assertNotSame(a1, g3.findSource("SRC1").findMonitor("A.1"));
+        Assert.assertNotSame(c2, g3.findSource("SRC2").findMonitor("C.2"));
+        Assert.assertTrue(g3.isEngineUsed(g3.getEngines().get("SRC1")));
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * AutoSub sample code
+ */
+package com.ibm.idrcdc.autosub.monitor;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.Assert;
+import com.ibm.idrcdc.autosub.config.*;
+
+/**
+ *
+ * @author zinal
+ */
+public class SubscriptionStatesTest {
+
+    private final AsEngine src = new AsEngine("SRC1", EngineMode.Source);
+    private final AsEngine dst = new AsEngine("DST1", EngineMode.Target);
+    private final PerEngine srcEngine = new PerEngine(src);
+    private final PerEngine dstEngine = new PerEngine(dst);
+    private final Monitor m1 = new Monitor(new AsSubscription("SUB1", src, dst),
+            srcEngine, dstEngine);
+    private final Monitor m2 = new Monitor(new AsSubscription("SUB2", src, dst),
+            srcEngine, dstEngine);
+    private final PerSource ps = new PerSource(srcEngine);
+
+    public SubscriptionStatesTest() {
+        srcEngine.setEnabled(true);
+        dstEngine.setEnabled(true);
+        final PerTarget pst = new PerTarget(dstEngine);
+        pst.addMonitor(m1);
+        pst.addMonitor(m2);
+        ps.addTarget(pst);
+    }
+
+    @Test
+    public void testChanges() {
+        SubscriptionStates states = ps.getStates();
+        states.startCycle();
+        SubscriptionStates.Entry e1 = states.update("DST1", "SUB1", "Mirror Continuous");
+        SubscriptionStates.Entry e2 = states.update("DST1", "SUB2", "Failed");
+        SubscriptionStates.Entry e3 = states.update("DST1", "SUB3", "Failed");
+        states.finishCycle();
+        Assert.assertSame(m1, e1.getMonitor());
+        Assert.assertSame(m2, e2.getMonitor());
+        // unmonitored subscription
+        Assert.assertNull(e3.getMonitor());
+        Assert.assertTrue(e1.isChanged());
+        Assert.assertEquals(3, states.getChangedCount());
+        Assert.assertEquals(3, states.getRowCount());
+
+        states.startCycle();
+        e1 = states.update("DST1", "SUB1", "Mirror Continuous");
+        e2 = states.update("DST1", "SUB2", "Failed");
+        states.finishCycle();
+        // unchanged rows are skipped, failed ones are always processed
+        Assert.assertFalse(e1.isChanged());
+        Assert.assertFalse(e1.isProcessingNeeded());
+        Assert.assertFalse(e2.isChanged());
+        Assert.assertTrue(e2.isProcessingNeeded());
+        Assert.assertEquals(0, states.getChangedCount());
+        Assert.assertEquals(2, states.getRowCount());
+
+        states.startCycle();
+        e2 = states.update("DST1", "SUB2", "Mirror Continuous");
+        states.finishCycle();
+        Assert.assertTrue(e2.isChanged());
+        Map<Monitor, String> collected = new HashMap<>();
+        states.collectStates(collected);
+        Assert.assertEquals(1, collected.size());
+        Assert.assertEquals("Mirror Continuous", collected.get(m2));
+    }
+
+    @Test
+    public void testFlagsKept() {
+        SubscriptionStates states = ps.getStates();
+        states.startCycle();
+        states.update("DST1", "SUB1", "Mirror Continuous");
+        states.update("DST1", "SUB2", "Mirror Continuous");
+        states.finishCycle();
+        m1.setKnown(true);
+        m2.setKnown(true);
+        // SUB1 unchanged, SUB2 missing from the output
+        states.startCycle();
+        Assert.assertFalse(states.update("DST1", "SUB1", "Mirror Continuous").isChanged());
+        states.finishCycle();
+        Assert.assertTrue(m1.isKnown());
+        Assert.assertFalse(m2.isKnown());
+        // SUB2 re-appears with the same state, and is processed again
+        states.startCycle();
+        Assert.assertTrue(states.update("DST1", "SUB2", "Mirror Continuous").isChanged());
+        states.finishCycle();
+    }
+
+    @Test
+    public void testTargetEnabled() {
+        SubscriptionStates states = ps.getStates();
+        dstEngine.setEnabled(false);
+        states.startCycle();
+        Assert.assertNull(states.update("DST1", "SUB1", "Failed").getMonitor());
+        states.finishCycle();
+        // the row keeps the monitor resolved before, until reset
+        dstEngine.setEnabled(true);
+        states.startCycle();
+        Assert.assertNull(states.update("DST1", "SUB1", "Failed").getMonitor());
+        states.finishCycle();
+        states.reset();
+        states.startCycle();
+        SubscriptionStates.Entry e = states.update("DST1", "SUB1", "Failed");
+        states.finishCycle();
+        Assert.assertSame(m1, e.getMonitor());
+        Assert.assertTrue(e.isChanged());
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * AutoSub sample code
+ */
+package com.ibm.idrcdc.autosub.monitor;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.junit.Test;
+import org.junit.Assert;
+import com.ibm.idrcdc.autosub.config.*;
+
+/**
+ *
+ * @author zinal
+ */
+public class TableIndexTest {
+
+    private final AsEngine src = new AsEngine("SRC1", EngineMode.Source);
+    private final AsEngine dst = new AsEngine("DST1", EngineMode.Target);
+    private final PerEngine srcEngine = new PerEngine(src);
+    private final PerEngine dstEngine = new PerEngine(dst);
+
+    private Monitor newMonitor(String name, String... tables) {
+        Monitor m = new Monitor(new AsSubscription(name, src, dst),
+                srcEngine, dstEngine);
+        m.setSourceTables(Arrays.asList(tables));
+        return m;
+    }
+
+    @Test
+    public void testLocker() {
+        Monitor m1 = newMonitor("SUB1", "S.T1", "S.T2");
+        Monitor m2 = newMonitor("SUB2", "S.T2", "S.T3");
+        Monitor m3 = newMonitor("SUB3", "S.T4");
+        TableIndex index = new TableIndex(Arrays.asList(m1, m2, m3));
+        index.refresh();
+
+        List<Monitor> stoppedOnT2 = Arrays.asList(m1);
+        BitSet stopped = index.toBitSet(stoppedOnT2);
+        Assert.assertSame(m2, index.findLocker("S.T2", stopped));
+        stopped = index.toBitSet(Arrays.asList(m1, m2));
+        Assert.assertNull(index.findLocker("S.T2", stopped));
+        Assert.assertNull(index.findLocker("S.T1", index.toBitSet(Arrays.asList(m1))));
+        // unknown tables are never locked
+        Assert.assertNull(index.findLocker("S.T9", new BitSet()));
+    }
+
+    @Test
+    public void testRefresh() {
+        Monitor m1 = newMonitor("SUB1", "S.T1");
+        Monitor m2 = newMonitor("SUB2", "S.T2");
+        TableIndex index = new TableIndex(Arrays.asList(m1, m2));
+        index.refresh();
+        BitSet stopped = index.toBitSet(Arrays.asList(m1));
+        Assert.assertNull(index.findLocker("S.T1", stopped));
+        // SUB2 starts replicating S.T1, SUB1 stops at it
+        m2.setSourceTables(Arrays.asList("S.T1", "S.T2"));
+        index.refresh();
+        Assert.assertSame(m2, index.findLocker("S.T1", stopped));
+        // and drops it again
+        m2.setSourceTables(Arrays.asList("S.T2"));
+        index.refresh();
+        Assert.assertNull(index.findLocker("S.T1", stopped));
+        Assert.assertEquals(-1, index.getPosition(newMonitor("SUB3")));
+    }
+
+}